@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "com.maxello"
@@ -14,8 +15,345 @@ dependencies {
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    // Benchmarks share the test stand-ins
+    jmhImplementation(sourceSets.test.get().output)
 }
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+    // LoadSimulationTest: -PsimPlayers, -PsimOps (per player) and -PsimThinkMicros scale the load
+    listOf("simPlayers", "simOps", "simThinkMicros").forEach { name ->
+        providers.gradleProperty(name).orNull?.let { systemProperty(name, it) }
+    }
+    // Its metrics report (apply p50/p99, throughput, counters)
+    systemProperty("simReport", layout.buildDirectory.file("reports/load-simulation.txt").get().asFile.absolutePath)
+}
+
+// ./gradlew jmh -- benchmarks under src/jmh, with allocation rates from the gc profiler
+jmh {
+    jmhVersion.set("1.37")
+    profilers.add("gc")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    includes.addAll(providers.gradleProperty("jmhIncludes").map { listOf(it) }.orElse(emptyList()))
+}
+
+// Validates every .blockymodel and packages a minified copy (no whitespace, default-valued fields dropped).
+// -PblockymodelKeepDefaults keeps the defaults, -PblockymodelTextureSize=WxH sets the UV bounds.
+val blockyModelSources = layout.projectDirectory.dir("src/main/resources")
+val compileBlockyModels by tasks.registering {
+    group = "build"
+    description = "Validates and minifies .blockymodel assets for the packaged jar."
+
+    val sources = fileTree(blockyModelSources) { include("Common/Assets/**/*.blockymodel") }
+    val outDir = layout.buildDirectory.dir("generated/blockymodels")
+    val keepDefaults = providers.gradleProperty("blockymodelKeepDefaults").isPresent
+    val textureSize = providers.gradleProperty("blockymodelTextureSize").getOrElse("256x128").split("x").map { it.trim().toInt() }
+    inputs.files(sources)
+    inputs.property("keepDefaults", keepDefaults)
+    inputs.property("textureSize", textureSize)
+    outputs.dir(outDir)
+
+    doLast {
+        val out = outDir.get().asFile
+        out.deleteRecursively()
+        var before = 0L
+        var after = 0L
+
+        sources.visit {
+            if (isDirectory) return@visit
+            val errors = mutableListOf<String>()
+            @Suppress("UNCHECKED_CAST")
+            val model = groovy.json.JsonSlurper().parse(file) as MutableMap<String, Any?>
+            validateBlockyModel(model, textureSize[0], textureSize[1], errors)
+            if (errors.isNotEmpty()) {
+                throw GradleException("$relativePath:\n  " + errors.joinToString("\n  "))
+            }
+            if (!keepDefaults) stripBlockyModelDefaults(model)
+
+            val minified = groovy.json.JsonOutput.toJson(model).toByteArray(Charsets.UTF_8)
+            val target = relativePath.getFile(out)
+            target.parentFile.mkdirs()
+            target.writeBytes(minified)
+
+            before += file.length()
+            after += minified.size
+            logger.lifecycle("blockymodel $relativePath: ${file.length()} -> ${minified.size} bytes")
+        }
+        if (before > 0) {
+            logger.lifecycle("blockymodels: $before -> $after bytes (-${100 - after * 100 / before}%)")
+        }
+    }
+}
+
+sourceSets.main {
+    resources.exclude("**/*.blockymodel")
+}
+
+tasks.processResources {
+    from(compileBlockyModels)
+}
+
+@Suppress("UNCHECKED_CAST")
+fun blockyNodes(parent: Map<String, Any?>, key: String): List<MutableMap<String, Any?>> =
+    (parent[key] as? List<MutableMap<String, Any?>>).orEmpty()
+
+fun blockyNumber(map: Any?, key: String): Double = ((map as? Map<*, *>)?.get(key) as? Number)?.toDouble() ?: 0.0
+
+fun validateBlockyModel(model: Map<String, Any?>, textureWidth: Int, textureHeight: Int, errors: MutableList<String>) {
+    val ids = HashSet<String>()
+    // UV width/height of each face, in box size axes
+    val faceAxes = mapOf("front" to ("x" to "y"), "back" to ("x" to "y"), "left" to ("z" to "y"), "right" to ("z" to "y"), "top" to ("x" to "z"), "bottom" to ("x" to "z"))
+
+    fun visit(node: Map<String, Any?>, path: String) {
+        val id = node["id"]?.toString()
+        val where = "$path/${node["name"] ?: id}"
+        if (id == null) errors += "$where: missing id"
+        else if (!ids.add(id)) errors += "$where: duplicate id $id"
+
+        val shape = node["shape"] as? Map<*, *>
+        if (shape == null) {
+            errors += "$where: missing shape"
+        } else {
+            val type = shape["type"]
+            val size = (shape["settings"] as? Map<*, *>)?.get("size")
+            val dims = listOf("x", "y", "z").map { blockyNumber(size, it) }
+            when (type) {
+                "box" -> if (dims.any { it <= 0 || it > 512 }) errors += "$where: box size $dims out of range (0, 512]"
+                "quad" -> if (dims.any { it < 0 || it > 512 } || dims.count { it == 0.0 } > 1) errors += "$where: quad size $dims out of range"
+            }
+            listOf("x", "y", "z").forEach { if (!blockyNumber(shape["stretch"], it).isFinite()) errors += "$where: stretch.$it is not finite" }
+
+            (shape["textureLayout"] as? Map<*, *>).orEmpty().forEach { (face, layout) ->
+                val l = layout as? Map<*, *> ?: return@forEach
+                val u = blockyNumber(l["offset"], "x")
+                val v = blockyNumber(l["offset"], "y")
+                if (u < 0 || v < 0 || u > textureWidth || v > textureHeight) {
+                    errors += "$where: $face UV offset ($u, $v) outside ${textureWidth}x$textureHeight"
+                    return@forEach
+                }
+                // Rotated/mirrored faces are anchored differently; only the plain case has a known extent
+                val mirror = l["mirror"] as? Map<*, *>
+                val plain = blockyNumber(l, "angle") == 0.0 && mirror?.get("x") != true && mirror?.get("y") != true
+                val axes = faceAxes[face]
+                if (plain && axes != null && type == "box") {
+                    val w = blockyNumber(size, axes.first)
+                    val h = blockyNumber(size, axes.second)
+                    if (u + w > textureWidth || v + h > textureHeight) errors += "$where: $face UV ($u, $v)+(${w}x$h) outside ${textureWidth}x$textureHeight"
+                }
+            }
+        }
+        blockyNodes(node, "children").forEach { visit(it, where) }
+    }
+    blockyNodes(model, "nodes").forEach { visit(it, "") }
+}
+
+fun stripBlockyModelDefaults(model: Map<String, Any?>) {
+    fun allZero(v: Any?) = v is Map<*, *> && v.values.all { it is Number && it.toDouble() == 0.0 }
+
+    fun visit(node: MutableMap<String, Any?>) {
+        @Suppress("UNCHECKED_CAST")
+        val shape = node["shape"] as? MutableMap<String, Any?>
+        if (shape != null) {
+            if (allZero(shape["offset"])) shape.remove("offset")
+            (shape["textureLayout"] as? Map<*, *>).orEmpty().values.forEach { layout ->
+                @Suppress("UNCHECKED_CAST")
+                val l = layout as? MutableMap<String, Any?> ?: return@forEach
+                val mirror = l["mirror"] as? Map<*, *>
+                if (mirror != null && mirror.values.all { it == false }) l.remove("mirror")
+                if ((l["angle"] as? Number)?.toDouble() == 0.0) l.remove("angle")
+            }
+        }
+        blockyNodes(node, "children").forEach { visit(it) }
+    }
+    blockyNodes(model, "nodes").forEach { visit(it) }
+}
+
+// Offline pass over the source models: culls box faces hidden inside other boxes and merges stacked sibling
+// boxes whose UV strips line up. Writes reviewable variants and report.txt to build/blockymodels-optimized;
+// nothing is packaged, copy a variant over the source once it looks right in game.
+val optimizeBlockyModels by tasks.registering {
+    group = "build"
+    description = "Writes geometry-optimized .blockymodel variants with a before/after report."
+
+    val sources = fileTree(blockyModelSources) { include("Common/Assets/**/*.blockymodel") }
+    val outDir = layout.buildDirectory.dir("blockymodels-optimized")
+    inputs.files(sources)
+    outputs.dir(outDir)
+
+    doLast {
+        val out = outDir.get().asFile
+        out.deleteRecursively()
+        val report = mutableListOf(
+            "Bind pose only: culling assumes the occluding box does not move relative to the culled one.",
+            "Only nodes whose whole parent chain is unrotated are considered.",
+            ""
+        )
+
+        sources.visit {
+            if (isDirectory) return@visit
+            @Suppress("UNCHECKED_CAST")
+            val model = groovy.json.JsonSlurper().parse(file) as MutableMap<String, Any?>
+            val before = blockyCounts(model)
+            val lines = mutableListOf<String>()
+
+            mergeBlockyBoxes(model, lines)
+            cullBlockyFaces(model, lines)
+
+            val after = blockyCounts(model)
+            val target = relativePath.getFile(out)
+            target.parentFile.mkdirs()
+            target.writeText(groovy.json.JsonOutput.prettyPrint(groovy.json.JsonOutput.toJson(model)))
+
+            report += "$relativePath: nodes ${before.first} -> ${after.first}, box faces ${before.second} -> ${after.second}"
+            lines.forEach { report += "  $it" }
+            logger.lifecycle("blockymodel $relativePath: nodes ${before.first} -> ${after.first}, box faces ${before.second} -> ${after.second}")
+        }
+        out.mkdirs()
+        out.resolve("report.txt").writeText(report.joinToString("\n", postfix = "\n"))
+    }
+}
+
+// face name -> (normal axis, direction); front faces +z, the model's left is +x
+val blockyFaces = listOf("right" to (0 to -1), "left" to (0 to 1), "bottom" to (1 to -1), "top" to (1 to 1), "back" to (2 to -1), "front" to (2 to 1))
+val blockyAxes = listOf("x", "y", "z")
+
+class BlockyBox(val node: MutableMap<String, Any?>, val siblings: MutableList<MutableMap<String, Any?>>, val min: DoubleArray, val max: DoubleArray)
+
+fun blockyName(node: Map<String, Any?>) = "${node["name"] ?: node["id"]}"
+
+fun blockyCounts(model: Map<String, Any?>): Pair<Int, Int> {
+    var nodes = 0
+    var faces = 0
+    fun visit(node: Map<String, Any?>) {
+        nodes++
+        val shape = node["shape"] as? Map<*, *>
+        if (shape?.get("type") == "box") faces += (shape["textureLayout"] as? Map<*, *>)?.size ?: 0
+        blockyNodes(node, "children").forEach { visit(it) }
+    }
+    blockyNodes(model, "nodes").forEach { visit(it) }
+    return nodes to faces
+}
+
+/** Bind-pose AABBs of visible boxes whose node and ancestors are all unrotated. */
+fun blockyBoxes(model: MutableMap<String, Any?>): List<BlockyBox> {
+    val boxes = mutableListOf<BlockyBox>()
+    fun unrotated(node: Map<String, Any?>): Boolean {
+        val o = node["orientation"] ?: return true
+        return listOf("x", "y", "z").all { Math.abs(blockyNumber(o, it)) < 1e-6 }
+    }
+    fun visit(node: MutableMap<String, Any?>, siblings: MutableList<MutableMap<String, Any?>>, origin: DoubleArray) {
+        if (!unrotated(node)) return
+        val pos = DoubleArray(3) { origin[it] + blockyNumber(node["position"], blockyAxes[it]) }
+        val shape = node["shape"] as? Map<*, *>
+        if (shape?.get("type") == "box" && shape["visible"] != false) {
+            val size = (shape["settings"] as? Map<*, *>)?.get("size")
+            val center = DoubleArray(3) { pos[it] + blockyNumber(shape["offset"], blockyAxes[it]) }
+            val half = DoubleArray(3) { Math.abs(blockyNumber(size, blockyAxes[it]) * blockyNumber(shape["stretch"], blockyAxes[it])) / 2 }
+            boxes += BlockyBox(node, siblings, DoubleArray(3) { center[it] - half[it] }, DoubleArray(3) { center[it] + half[it] })
+        }
+        @Suppress("UNCHECKED_CAST")
+        val children = node["children"] as? MutableList<MutableMap<String, Any?>> ?: return
+        children.toList().forEach { visit(it, children, pos) }
+    }
+    @Suppress("UNCHECKED_CAST")
+    val roots = model["nodes"] as? MutableList<MutableMap<String, Any?>> ?: return boxes
+    roots.toList().forEach { visit(it, roots, DoubleArray(3)) }
+    return boxes
+}
+
+fun cullBlockyFaces(model: MutableMap<String, Any?>, lines: MutableList<String>) {
+    val eps = 1e-4
+    val boxes = blockyBoxes(model)
+    // Decide everything against the original geometry before removing anything
+    val hidden = mutableListOf<Pair<BlockyBox, String>>()
+    for (a in boxes) {
+        for ((face, normal) in blockyFaces) {
+            val (n, dir) = normal
+            val plane = if (dir > 0) a.max[n] else a.min[n]
+            val occluder = boxes.firstOrNull { b ->
+                b !== a &&
+                    (if (dir > 0) b.min[n] <= plane + eps && b.max[n] > plane + eps else b.max[n] >= plane - eps && b.min[n] < plane - eps) &&
+                    (0..2).all { it == n || (b.min[it] <= a.min[it] + eps && b.max[it] >= a.max[it] - eps) }
+            }
+            if (occluder != null) {
+                hidden += a to face
+                lines += "cull ${blockyName(a.node)}.$face (inside ${blockyName(occluder.node)})"
+            }
+        }
+    }
+    for ((box, face) in hidden) {
+        ((box.node["shape"] as? Map<*, *>)?.get("textureLayout") as? MutableMap<*, *>)?.remove(face)
+    }
+}
+
+/**
+ * Merges childless sibling boxes stacked along y with the same cross-section, stretch and render flags,
+ * when each side face's UV strip continues exactly below the upper box's. Pairs that touch along x/z
+ * are only reported, since which way u runs on those faces isn't known here.
+ */
+fun mergeBlockyBoxes(model: MutableMap<String, Any?>, lines: MutableList<String>) {
+    val eps = 1e-4
+    fun same(a: Any?, b: Any?) = a == b || (a is Number && b is Number && Math.abs(a.toDouble() - b.toDouble()) < eps)
+    fun sameVec(a: Any?, b: Any?) = blockyAxes.all { same(blockyNumber(a, it), blockyNumber(b, it)) }
+
+    while (true) {
+        val boxes = blockyBoxes(model)
+        var merged = false
+        loop@ for (a in boxes) {
+            for (b in boxes) {
+                if (a === b || a.siblings !== b.siblings) continue
+                if (blockyNodes(a.node, "children").isNotEmpty() || blockyNodes(b.node, "children").isNotEmpty()) continue
+                val sa = a.node["shape"] as Map<*, *>
+                val sb = b.node["shape"] as Map<*, *>
+                if (!sameVec(sa["stretch"], sb["stretch"]) || listOf("doubleSided", "shadingMode", "unwrapMode").any { sa[it] != sb[it] }) continue
+
+                // b directly on top of a, same footprint
+                val axis = (0..2).firstOrNull { k -> same(a.max[k], b.min[k]) && (0..2).all { it == k || (same(a.min[it], b.min[it]) && same(a.max[it], b.max[it])) } } ?: continue
+                if (axis != 1) {
+                    lines += "merge candidate ${blockyName(a.node)} + ${blockyName(b.node)} along ${blockyAxes[axis]} (UV direction unknown, left alone)"
+                    continue
+                }
+
+                val la = sa["textureLayout"] as? Map<*, *> ?: continue
+                val lb = sb["textureLayout"] as? Map<*, *> ?: continue
+                val sizeB = (sb["settings"] as? Map<*, *>)?.get("size")
+                val uvSafe = listOf("front", "back", "left", "right").all { face ->
+                    val fa = la[face] as? Map<*, *>
+                    val fb = lb[face] as? Map<*, *>
+                    fun plain(f: Map<*, *>) = blockyNumber(f, "angle") == 0.0 && (f["mirror"] as? Map<*, *>)?.values?.none { it == true } != false
+                    // v runs downwards: the lower box's strip (b is upper) must end where a's begins
+                    fa != null && fb != null && plain(fa) && plain(fb) &&
+                        same(blockyNumber(fa["offset"], "x"), blockyNumber(fb["offset"], "x")) &&
+                        same(blockyNumber(fa["offset"], "y"), blockyNumber(fb["offset"], "y") + blockyNumber(sizeB, "y"))
+                }
+                if (!uvSafe) {
+                    lines += "merge candidate ${blockyName(a.node)} + ${blockyName(b.node)} along y (UV strips not contiguous, left alone)"
+                    continue
+                }
+
+                // Grow a (lower) upwards into b and take b's top face
+                @Suppress("UNCHECKED_CAST")
+                val shape = a.node["shape"] as MutableMap<String, Any?>
+                @Suppress("UNCHECKED_CAST")
+                val size = (shape["settings"] as MutableMap<String, Any?>)["size"] as MutableMap<String, Any?>
+                val stretchY = Math.abs(blockyNumber(shape["stretch"], "y"))
+                size["y"] = blockyNumber(size, "y") + blockyNumber(sizeB, "y")
+                @Suppress("UNCHECKED_CAST")
+                val offset = (shape["offset"] as? MutableMap<String, Any?>) ?: linkedMapOf<String, Any?>("x" to 0, "y" to 0, "z" to 0).also { shape["offset"] = it }
+                offset["y"] = blockyNumber(offset, "y") + blockyNumber(sizeB, "y") * stretchY / 2
+                @Suppress("UNCHECKED_CAST")
+                val layout = shape["textureLayout"] as MutableMap<String, Any?>
+                for (face in listOf("front", "back", "left", "right")) layout[face] = lb[face]
+                if (lb["top"] != null) layout["top"] = lb["top"] else layout.remove("top")
+
+                a.siblings.remove(b.node)
+                lines += "merged ${blockyName(b.node)} into ${blockyName(a.node)}"
+                merged = true
+                break@loop
+            }
+        }
+        if (!merged) return
+    }
+}
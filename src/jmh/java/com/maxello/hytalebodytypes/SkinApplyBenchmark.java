@@ -0,0 +1,66 @@
+package com.maxello.hytalebodytypes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * trySwapBodyCharacteristic's read / rebuild / apply steps against {@link StandInPlayer}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SkinApplyBenchmark {
+
+    @Param({"0", "1024"})
+    public int skinCacheSize;
+
+    private StandInPlayer[] players;
+    private SkinAccessor skins;
+    private SkinCache cache;
+    private StandInPlayer.PlayerSkinPartId part;
+    private int next;
+
+    @Setup
+    public void setup() {
+        // 256 players sharing 8 outfits
+        players = new StandInPlayer[256];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = StandInPlayer.withOutfit(i & 7);
+        }
+        skins = SkinAccessor.forPlayer(StandInPlayer.class);
+        if (!skins.isResolved()) throw new IllegalStateException(skins.failure());
+        cache = new SkinCache(skinCacheSize, SkinAccessor.constructorArgs());
+        part = players[0].getPlayerSkin().getHaircut();
+    }
+
+    @Benchmark
+    public boolean swapBodyCharacteristic() throws Throwable {
+        StandInPlayer player = players[next++ & (players.length - 1)];
+        Object skin = skins.readSkin(player);
+        String target = "HBT_Bust".equals(skins.readBodyCharacteristicId(skin)) ? "Default" : "HBT_Bust";
+        return skins.apply(player, skins.rebuild(skin, target, cache));
+    }
+
+    @Benchmark
+    public Object rebuildSkin() throws Throwable {
+        return skins.rebuild(players[next++ & (players.length - 1)].getPlayerSkin(), "HBT_Bust", cache);
+    }
+
+    @Benchmark
+    public String stringifyPartId() {
+        return cache.internPartId(part.getAssetId(), part.getTextureId(), part.getVariantId());
+    }
+
+    @Benchmark
+    public SkinAccessor resolveAccessor() {
+        return SkinAccessor.forPlayer(StandInPlayer.class);
+    }
+}
@@ -0,0 +1,71 @@
+package com.maxello.hytalebodytypes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * isEnabled-style lookups on the state store, alone and while other threads toggle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StateLookupBenchmark {
+
+    @Param({"1000", "100000"})
+    public int players;
+
+    private PlayerStateStore store;
+    private long[] msb;
+    private long[] lsb;
+
+    @Setup
+    public void setup() {
+        store = new StripedStateStore();
+        msb = new long[players];
+        lsb = new long[players];
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < players; i++) {
+            msb[i] = random.nextLong();
+            lsb[i] = random.nextLong();
+            store.put(msb[i], lsb[i], (short) 1);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public short lookup(Cursor c) {
+        int i = Math.floorMod(c.next++, players);
+        return store.get(msb[i], lsb[i]);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(6)
+    public short contendedLookup(Cursor c) {
+        int i = Math.floorMod(c.next++, players);
+        return store.get(msb[i], lsb[i]);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public short contendedToggle(Cursor c) {
+        int i = Math.floorMod(c.next += 7, players);
+        return store.update(msb[i], lsb[i], s -> s == 1 ? 2 : 1);
+    }
+}
@@ -0,0 +1,87 @@
+package com.maxello.hytalebodytypes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * saveState (one flush of changed players) and loadState (one player's entry) against a
+ * populated shard directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatePersistenceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int players;
+
+    // players changed between two flushes
+    @Param({"64"})
+    public int batch;
+
+    private Path dir;
+    private ShardedStateStorage storage;
+    private PlayerStateStore state;
+    private UUID[] known;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("hbt-bench");
+        storage = new ShardedStateStorage(dir.resolve("shards"), 64L << 10);
+        storage.init();
+
+        random = new SplittableRandom(42);
+        state = new StripedStateStore();
+        known = new UUID[players];
+        for (int i = 0; i < players; i++) {
+            known[i] = new UUID(random.nextLong(), random.nextLong());
+            state.put(known[i], (short) (random.nextBoolean() ? 1 : 0));
+        }
+        storage.importAll(state);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Benchmark
+    public void saveState() throws IOException {
+        UUID[] changed = new UUID[batch];
+        for (int i = 0; i < batch; i++) {
+            changed[i] = known[random.nextInt(players)];
+            state.update(changed[i], s -> s ^ 1);
+        }
+        List<UUID> list = Arrays.asList(changed);
+        storage.append(list, state);
+    }
+
+    @Benchmark
+    public short loadState() throws IOException {
+        return storage.read(known[random.nextInt(players)]);
+    }
+}
@@ -0,0 +1,138 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only id &lt;-&gt; ordinal table behind every body characteristic id the plugin stores.
+ * <p>
+ * Backed by {@code body_ids.txt}, one id per line; an ordinal never changes once assigned, so a
+ * persisted byte keeps its meaning across restarts, catalog reloads and new ids. Seeded with
+ * HBT_Bust first so the old on/off state byte (1) reads as HBT_Bust.
+ * <p>
+ * {@link #id} and {@link #ordinal} only look in memory and never lock, so the apply path can use
+ * them on the world thread. {@link #intern} and {@link #refresh} touch the file and take a
+ * cross-process lock: call them at startup / reload or on a background thread.
+ * <p>
+ * Nodes sharing player state share the file: new ids are assigned under a file lock after
+ * re-reading it, and an ordinal this node doesn't know yet needs a {@link #refresh}.
+ */
+final class BodyIdTable {
+
+    static final String FIRST_ID = "HBT_Bust";
+    // Stored as ordinal + 1 in one byte, 0 meaning none
+    static final int MAX_IDS = 255;
+
+    private final Path file;
+    private final Path lockFile;
+    // Both replaced whole on re-read
+    private volatile Map<String, Integer> ordinals = Map.of();
+    private volatile String[] ids = new String[0];
+
+    BodyIdTable(@Nonnull Path file) {
+        this.file = file;
+        this.lockFile = file.resolveSibling(file.getFileName() + ".lock");
+    }
+
+    synchronized void load() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        FileLocks.withLock(lockFile, () -> {
+            if (readLines().isEmpty()) {
+                Files.write(file, List.of(FIRST_ID), StandardCharsets.UTF_8);
+            }
+            reread();
+            return null;
+        });
+    }
+
+    /**
+     * Ordinal of {@code id}, assigning (and persisting) the next free one for a new id.
+     *
+     * @return the ordinal, or -1 once all {@link #MAX_IDS} are taken
+     */
+    synchronized int intern(@Nonnull String id) throws IOException {
+        Integer known = ordinals.get(id);
+        if (known != null) return known;
+
+        return FileLocks.withLock(lockFile, () -> {
+            // another node may have added it, or other ids, meanwhile
+            reread();
+            Integer assigned = ordinals.get(id);
+            if (assigned != null) return assigned;
+
+            String[] current = ids;
+            if (current.length >= MAX_IDS) return -1;
+
+            Files.writeString(file, id + "\n", StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            reread();
+            return ordinals.getOrDefault(id, -1);
+        });
+    }
+
+    /**
+     * Ordinal of an id this node already knows, without touching the file.
+     *
+     * @return the ordinal, or -1 if {@link #intern} has not seen it
+     */
+    int ordinal(@Nonnull String id) {
+        return ordinals.getOrDefault(id, -1);
+    }
+
+    /**
+     * Id for an ordinal known to this node, or null (unassigned, or assigned by another node since
+     * the last read).
+     */
+    String id(int ordinal) {
+        String[] current = ids;
+        return (ordinal >= 0 && ordinal < current.length) ? current[ordinal] : null;
+    }
+
+    /**
+     * Re-reads the file for an ordinal another node may have assigned.
+     *
+     * @return the id, or null if it is still unassigned or the file could not be read
+     */
+    synchronized String refresh(int ordinal) {
+        if (id(ordinal) == null && ordinal >= 0 && ordinal < MAX_IDS) {
+            try {
+                reread();
+            } catch (IOException e) {
+                HBTLog.warn("Could not re-read %s: %s", file, e);
+            }
+        }
+        return id(ordinal);
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    // Holding this table's monitor
+    private void reread() throws IOException {
+        Map<String, Integer> read = new HashMap<>();
+        List<String> unique = new ArrayList<>();
+        for (String id : readLines()) {
+            if (unique.size() < MAX_IDS && read.putIfAbsent(id, unique.size()) == null) unique.add(id);
+        }
+        ids = unique.toArray(new String[0]);
+        ordinals = read;
+    }
+
+    private List<String> readLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) lines.add(line.trim());
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,83 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+
+/**
+ * What {@code /bodytype <mode>} and the page's buttons do for a player, without the command and UI
+ * plumbing: state changes go through the {@link PlayerActionMailbox}, replies through the handle.
+ */
+final class BodyTypeActions {
+
+    private final BodyTypeService service;
+    private final PlayerActionMailbox mailbox;
+
+    BodyTypeActions(@Nonnull BodyTypeService service, @Nonnull PlayerActionMailbox mailbox) {
+        this.service = service;
+        this.mailbox = mailbox;
+    }
+
+    PlayerActionMailbox mailbox() {
+        return mailbox;
+    }
+
+    /**
+     * Runs one of the player's own modes: on/off/toggle/next/apply/status/list or a body type id.
+     */
+    void runMode(@Nonnull String mode, @Nonnull PlayerHandle player) {
+        switch (mode) {
+            case "on" -> submit(player, PlayerActionMailbox.Action.ENABLE);
+            case "off" -> submit(player, PlayerActionMailbox.Action.DISABLE);
+            case "toggle" -> submit(player, PlayerActionMailbox.Action.TOGGLE);
+            case "next" -> submit(player, PlayerActionMailbox.Action.CYCLE);
+            case "apply" -> mailbox.submit(player, PlayerActionMailbox.Action.APPLY, enabled -> player.sendMessage("Applied current HBT state.", "#cbd5e0"));
+            case "status" -> sendStatus(player);
+            case "list" -> {
+                BodyTypeCatalog.Entry current = service.bodyType(player.uuid());
+                for (BodyTypeCatalog.Entry e : service.catalog().entries()) {
+                    player.sendMessage((e == current ? "> " : "  ") + e.id(), e == current ? "#4aff7f" : "#cbd5e0");
+                }
+            }
+            default -> {
+                BodyTypeCatalog.Entry bodyType = service.catalog().byId(mode);
+                if (bodyType != null) {
+                    mailbox.submit(player, PlayerActionMailbox.Action.SELECT, bodyType.choice(), enabled -> sendStatus(player));
+                } else {
+                    player.sendMessage("Use: /bodytype on|off|toggle|next|status|apply|stats|list|applyall|cancel|<body type>", "#ff6b6b");
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a page button (Enable, Disable, Toggle, Cycle); {@code onApplied} runs on the world thread
+     * once the result is applied, to update the page.
+     *
+     * @return false if {@code action} is not one of them
+     */
+    boolean runPageAction(@Nonnull String action, @Nonnull PlayerHandle player, @Nonnull Runnable onApplied) {
+        PlayerActionMailbox.Action mapped = switch (action) {
+            case "Enable" -> PlayerActionMailbox.Action.ENABLE;
+            case "Disable" -> PlayerActionMailbox.Action.DISABLE;
+            case "Toggle" -> PlayerActionMailbox.Action.TOGGLE;
+            case "Cycle" -> PlayerActionMailbox.Action.CYCLE;
+            default -> null;
+        };
+        if (mapped == null) return false;
+
+        mailbox.submit(player, mapped, enabled -> {
+            BodyTypeCatalog.Entry bodyType = service.bodyType(player.uuid());
+            player.sendMessage("HBT: " + (bodyType != null ? bodyType.id() : "disabled"), enabled ? "#4aff7f" : "#ff6b6b");
+            onApplied.run();
+        });
+        return true;
+    }
+
+    private void sendStatus(@Nonnull PlayerHandle player) {
+        BodyTypeCatalog.Entry bodyType = service.bodyType(player.uuid());
+        player.sendMessage("Hytale Body Types: " + (bodyType != null ? bodyType.id() : "OFF"), bodyType != null ? "#4aff7f" : "#ff6b6b");
+    }
+
+    private void submit(@Nonnull PlayerHandle player, @Nonnull PlayerActionMailbox.Action action) {
+        mailbox.submit(player, action, enabled -> sendStatus(player));
+    }
+}
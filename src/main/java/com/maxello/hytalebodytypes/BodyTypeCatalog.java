@@ -0,0 +1,132 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, ordinal-indexed view of the body characteristics from BodyCharacteristics.json.
+ * <p>
+ * Players store a choice as one byte: {@link #NONE} for "off", otherwise
+ * {@code ordinal + 1}. Ordinals come from the append-only {@link BodyIdTable}, so reordering or
+ * extending the JSON never changes what a stored byte means.
+ */
+final class BodyTypeCatalog {
+
+    static final String RESOURCE = "Common/Assets/Cosmetics/CharacterCreator/BodyCharacteristics.json";
+    // Choice byte for "off"
+    static final byte NONE = 0;
+    // Legacy "on"; BodyIdTable pins HBT_Bust at ordinal 0 so this still reads as HBT_Bust
+    static final byte STATE_ON = 1;
+
+    record Entry(int ordinal, @Nonnull String id, String name) {
+
+        byte choice() {
+            return (byte) (ordinal + 1);
+        }
+    }
+
+    private final Entry[] byOrdinal;
+    private final List<Entry> listed;
+    private final Map<String, Entry> byId;
+
+    private BodyTypeCatalog(Entry[] byOrdinal, List<Entry> listed) {
+        this.byOrdinal = byOrdinal;
+        this.listed = Collections.unmodifiableList(listed);
+
+        Map<String, Entry> ids = new HashMap<>();
+        for (Entry e : byOrdinal) {
+            if (e != null) ids.put(e.id().toLowerCase(Locale.ROOT), e);
+        }
+        this.byId = ids;
+    }
+
+    /**
+     * Loads {@code jsonFile} (seeded from the bundled BodyCharacteristics.json the first time),
+     * interning new ids into {@code ids}.
+     */
+    static BodyTypeCatalog load(@Nonnull Path jsonFile, @Nonnull BodyIdTable ids) throws IOException {
+        if (!Files.exists(jsonFile)) {
+            try (InputStream in = BodyTypeCatalog.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+                if (in == null) throw new IOException("Missing resource " + RESOURCE);
+                Files.copy(in, jsonFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        return parse(Files.readString(jsonFile, StandardCharsets.UTF_8), ids);
+    }
+
+    /**
+     * @throws IOException if the JSON is malformed, is not an array, or an entry has no (or a repeated) Id
+     */
+    static BodyTypeCatalog parse(@Nonnull String json, @Nonnull BodyIdTable ids) throws IOException {
+        if (!(JsonReader.parse(json) instanceof List<?> array)) throw new IOException("Expected an array of body characteristics");
+
+        List<Entry> listed = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < array.size(); i++) {
+            if (!(array.get(i) instanceof Map<?, ?> obj) || !(obj.get("Id") instanceof String id) || id.isBlank()) {
+                throw new IOException("Body characteristic #" + (i + 1) + " has no Id");
+            }
+            if (!seen.add(id.toLowerCase(Locale.ROOT))) throw new IOException("Body characteristic " + id + " is defined twice");
+
+            int ordinal = ids.intern(id);
+            if (ordinal < 0) throw new IOException("More than " + BodyIdTable.MAX_IDS + " body characteristic ids");
+            listed.add(new Entry(ordinal, id, (obj.get("Name") instanceof String name) ? name : id));
+        }
+        if (listed.isEmpty()) throw new IOException("No body characteristic ids found");
+
+        Entry[] byOrdinal = new Entry[ids.size()];
+        for (Entry e : listed) {
+            byOrdinal[e.ordinal()] = e;
+        }
+        return new BodyTypeCatalog(byOrdinal, listed);
+    }
+
+    /**
+     * Entry for a stored choice byte, or null for NONE / ids no longer defined.
+     */
+    Entry byChoice(byte choice) {
+        int ordinal = (choice & 0xFF) - 1;
+        return (ordinal >= 0 && ordinal < byOrdinal.length) ? byOrdinal[ordinal] : null;
+    }
+
+    Entry byId(@Nonnull String id) {
+        return byId.get(id.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Entries in file order.
+     */
+    List<Entry> entries() {
+        return listed;
+    }
+
+    /**
+     * Choice after {@code current} in file order, wrapping to the first entry.
+     */
+    byte next(byte current) {
+        if (listed.isEmpty()) return NONE;
+
+        Entry e = byChoice(current);
+        int i = (e == null) ? -1 : listed.indexOf(e);
+        return listed.get((i + 1) % listed.size()).choice();
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(byOrdinal);
+    }
+}
@@ -8,7 +8,6 @@ import com.hypixel.hytale.component.Store;
 import com.hypixel.hytale.protocol.packets.interface_.CustomPageLifetime;
 import com.hypixel.hytale.protocol.packets.interface_.CustomUIEventBindingType;
 import com.hypixel.hytale.protocol.packets.interface_.Page;
-import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.entity.entities.player.pages.InteractiveCustomUIPage;
 import com.hypixel.hytale.server.core.ui.builder.EventData;
@@ -22,6 +21,8 @@ import javax.annotation.Nonnull;
 public final class BodyTypePage extends InteractiveCustomUIPage<BodyTypePage.BodyTypeEventData> {
 
     private final HytaleBodyTypes plugin;
+    // What the client currently shows, so refresh() only sends what changed
+    private final BodyTypePageView view = new BodyTypePageView();
 
     public BodyTypePage(@Nonnull PlayerRef playerRef, @Nonnull HytaleBodyTypes plugin) {
         super(playerRef, CustomPageLifetime.CanDismissOrCloseThroughInteraction, BodyTypeEventData.CODEC);
@@ -32,22 +33,9 @@ public final class BodyTypePage extends InteractiveCustomUIPage<BodyTypePage.Bod
     public void build(@Nonnull Ref<EntityStore> ref, @Nonnull UICommandBuilder commandBuilder, @Nonnull UIEventBuilder eventBuilder, @Nonnull Store<EntityStore> store) {
         commandBuilder.append("Pages/BodyTypeToggle.ui");
 
-        boolean enabled = plugin.isEnabled(playerRef.getUuid());
-
-        commandBuilder.set("#StatusLabel.Text", enabled ? "Status: ON" : "Status: OFF");
-        commandBuilder.set("#StatusLabel.Style.TextColor", enabled ? "#4aff7f" : "#ff6b6b");
-
-        bindButtons(eventBuilder);
-    }
-
-    private void bindButtons(@Nonnull UIEventBuilder eventBuilder) {
-        eventBuilder.addEventBinding(CustomUIEventBindingType.Activating, "#EnableButton", new EventData().append("Action", "Enable"));
-
-        eventBuilder.addEventBinding(CustomUIEventBindingType.Activating, "#DisableButton", new EventData().append("Action", "Disable"));
-
-        eventBuilder.addEventBinding(CustomUIEventBindingType.Activating, "#ToggleButton", new EventData().append("Action", "Toggle"));
-
-        eventBuilder.addEventBinding(CustomUIEventBindingType.Activating, "#CloseButton", new EventData().append("Action", "Close"));
+        // Bindings survive non-clearing updates, so this is the only place they are sent
+        view.build(plugin.bodyType(playerRef.getUuid()), commandBuilder::set,
+                (selector, action) -> eventBuilder.addEventBinding(CustomUIEventBindingType.Activating, selector, new EventData().append("Action", action)));
     }
 
     @Override
@@ -56,49 +44,26 @@ public final class BodyTypePage extends InteractiveCustomUIPage<BodyTypePage.Bod
         if (player == null) return;
 
         String action = (data.action == null) ? "" : data.action;
+        if (!plugin.isReady() && !"Close".equals(action)) {
+            playerRef.sendMessage(plugin.notReadyMessage());
+            return;
+        }
 
-        switch (action) {
-            case "Enable" -> {
-                plugin.setEnabled(playerRef.getUuid(), true);
-                plugin.applyBodyCharacteristic(store, ref, playerRef);
-
-                playerRef.sendMessage(Message.raw("HBT: enabled").color("#4aff7f"));
-                refresh(ref, store);
-            }
-            case "Disable" -> {
-                plugin.setEnabled(playerRef.getUuid(), false);
-                plugin.applyBodyCharacteristic(store, ref, playerRef);
-
-                playerRef.sendMessage(Message.raw("HBT: disabled").color("#ff6b6b"));
-                refresh(ref, store);
-            }
-            case "Toggle" -> {
-                plugin.toggle(playerRef.getUuid());
-                plugin.applyBodyCharacteristic(store, ref, playerRef);
-
-                boolean enabled = plugin.isEnabled(playerRef.getUuid());
-                playerRef.sendMessage(Message.raw("HBT: " + (enabled ? "enabled" : "disabled")).color(enabled ? "#4aff7f" : "#ff6b6b"));
-                refresh(ref, store);
-            }
-            case "Close" -> player.getPageManager().setPage(ref, store, Page.None);
-            default -> {
-                // ignore
-            }
+        if ("Close".equals(action)) {
+            player.getPageManager().setPage(ref, store, Page.None);
+            return;
         }
+        // Enable/Disable/Toggle/Cycle; anything else is ignored
+        plugin.playerActions().runPageAction(action, new ServerPlayerHandle(store, ref, playerRef), this::refresh);
     }
 
-    private void refresh(@Nonnull Ref<EntityStore> ref, @Nonnull Store<EntityStore> store) {
+    private void refresh() {
+        long start = System.nanoTime();
         UICommandBuilder cb = new UICommandBuilder();
-        UIEventBuilder eb = new UIEventBuilder();
-
-        boolean enabled = plugin.isEnabled(playerRef.getUuid());
-
-        cb.set("#StatusLabel.Text", enabled ? "Status: ON" : "Status: OFF");
-        cb.set("#StatusLabel.Style.TextColor", enabled ? "#4aff7f" : "#ff6b6b");
-
-        bindButtons(eb);
-
-        sendUpdate(cb, eb, false);
+        if (view.refresh(plugin.bodyType(playerRef.getUuid()), cb::set)) {
+            sendUpdate(cb, false);
+        }
+        plugin.metrics().uiRefresh.recordSince(start);
     }
 
     public static final class BodyTypeEventData {
@@ -0,0 +1,75 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * What {@link BodyTypePage} sends to the client: the status label and the button bindings.
+ * <p>
+ * Remembers what the client currently shows, so {@link #refresh} emits only the properties that
+ * changed; the bindings survive non-clearing updates and are only emitted by {@link #build}. Kept
+ * apart from the page so the delta logic runs without a client.
+ */
+final class BodyTypePageView {
+
+    static final String STATUS_TEXT = "#StatusLabel.Text";
+    static final String STATUS_COLOR = "#StatusLabel.Style.TextColor";
+
+    // Selector and the Action it sends back
+    private static final List<String[]> BUTTONS = List.of(
+            new String[]{"#EnableButton", "Enable"},
+            new String[]{"#DisableButton", "Disable"},
+            new String[]{"#ToggleButton", "Toggle"},
+            new String[]{"#CycleButton", "Cycle"},
+            new String[]{"#CloseButton", "Close"});
+
+    private String sentStatusText;
+    private String sentStatusColor;
+
+    /**
+     * Full page: every property through {@code set}, every button through {@code bind}, both as
+     * (selector, value).
+     */
+    void build(BodyTypeCatalog.Entry bodyType, @Nonnull BiConsumer<String, String> set, @Nonnull BiConsumer<String, String> bind) {
+        sentStatusText = statusText(bodyType);
+        sentStatusColor = statusColor(bodyType != null);
+        set.accept(STATUS_TEXT, sentStatusText);
+        set.accept(STATUS_COLOR, sentStatusColor);
+
+        for (String[] button : BUTTONS) {
+            bind.accept(button[0], button[1]);
+        }
+    }
+
+    /**
+     * Emits only the properties that differ from what was last sent.
+     *
+     * @return false if nothing changed, so there is nothing to send
+     */
+    boolean refresh(BodyTypeCatalog.Entry bodyType, @Nonnull BiConsumer<String, String> set) {
+        String text = statusText(bodyType);
+        String color = statusColor(bodyType != null);
+
+        boolean changed = false;
+        if (!text.equals(sentStatusText)) {
+            set.accept(STATUS_TEXT, text);
+            sentStatusText = text;
+            changed = true;
+        }
+        if (!color.equals(sentStatusColor)) {
+            set.accept(STATUS_COLOR, color);
+            sentStatusColor = color;
+            changed = true;
+        }
+        return changed;
+    }
+
+    private static String statusText(BodyTypeCatalog.Entry bodyType) {
+        return (bodyType != null) ? "Status: " + bodyType.id() : "Status: OFF";
+    }
+
+    private static String statusColor(boolean enabled) {
+        return enabled ? "#4aff7f" : "#ff6b6b";
+    }
+}
@@ -0,0 +1,348 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Per-player body type state and the skin swap that applies it.
+ * <p>
+ * Works on {@link PlayerHandle}s, so it is the same code whether the player is a server entity or a
+ * stand-in. Built once player state is open; the catalog is swapped whole on reload.
+ * <p>
+ * Applying only looks body ids up in memory: every catalog id is interned when the catalog is
+ * loaded, and an id only met on a player's skin (or assigned by another node) is interned or
+ * re-read on the loader threads, never on the world thread.
+ */
+final class BodyTypeService {
+
+    // Your cosmetic IDs
+    static final String BODY_DEFAULT = "Default";
+    static final String BODY_BUST = "HBT_Bust";
+
+    enum ApplyResult {
+        APPLIED,
+        // the skin already had the target body, nothing was rebuilt or sent
+        UNCHANGED,
+        // the player's state is not resident yet, so what they chose is unknown; nothing was touched
+        NOT_LOADED,
+        FAILED
+    }
+
+    // Persisted per player, resident for players around: low byte = chosen body type (BodyTypeCatalog
+    // choice, 0 = off), high byte = body to restore when turned off (BodyIdTable ordinal + 1, 0 = unknown)
+    private final PlayerStateCache playerStates;
+    private final BodyIdTable bodyIds;
+    private final SkinCache skinCache;
+    private final HBTMetrics metrics;
+    private final String defaultBodyTypeId;
+
+    // Swapped whole on reload, never modified in place
+    private volatile BodyTypeCatalog catalog;
+    // What ENABLE / TOGGLE select
+    private volatile byte defaultChoice = BodyTypeCatalog.STATE_ON;
+
+    BodyTypeService(@Nonnull PlayerStateCache playerStates, @Nonnull BodyIdTable bodyIds, @Nonnull BodyTypeCatalog catalog, @Nonnull String defaultBodyTypeId, @Nonnull SkinCache skinCache, @Nonnull HBTMetrics metrics) {
+        this.playerStates = playerStates;
+        this.bodyIds = bodyIds;
+        this.skinCache = skinCache;
+        this.metrics = metrics;
+        this.defaultBodyTypeId = defaultBodyTypeId;
+        installCatalog(catalog);
+    }
+
+    private void installCatalog(BodyTypeCatalog bodyTypes) {
+        BodyTypeCatalog.Entry defaultEntry = bodyTypes.byId(defaultBodyTypeId);
+        if (defaultEntry == null) {
+            HBTLog.warn("bodyType.default %s is not a known body type, using %s", defaultBodyTypeId, BODY_BUST);
+            defaultEntry = bodyTypes.byId(BODY_BUST);
+        }
+        // Ordinals are stable across reloads, so a reader pairing the old default with the new table is fine
+        this.defaultChoice = (defaultEntry != null) ? defaultEntry.choice() : BodyTypeCatalog.STATE_ON;
+        this.catalog = bodyTypes;
+    }
+
+    void reloadCatalog(@Nonnull BodyTypeCatalog bodyTypes) {
+        installCatalog(bodyTypes);
+        // Rebuilt skins may carry ids that were just renamed or removed
+        skinCache.clear();
+    }
+
+    BodyTypeCatalog catalog() {
+        return catalog;
+    }
+
+    PlayerStateCache playerStates() {
+        return playerStates;
+    }
+
+    SkinCache skinCache() {
+        return skinCache;
+    }
+
+    boolean isEnabled(@Nonnull UUID uuid) {
+        return choice(uuid) != BodyTypeCatalog.NONE;
+    }
+
+    /**
+     * Stored choice byte, see {@link BodyTypeCatalog}.
+     */
+    byte choice(@Nonnull UUID uuid) {
+        return choiceOf(playerStates.get(uuid));
+    }
+
+    /**
+     * Body characteristic the player had before we first changed it, or null if unknown (or not yet
+     * re-read from the shared id table).
+     */
+    String restoreBodyId(@Nonnull UUID uuid) {
+        int restore = restoreOf(playerStates.get(uuid));
+        return (restore != 0) ? bodyIds.id(restore - 1) : null;
+    }
+
+    /**
+     * Chosen body type, or null when off.
+     */
+    BodyTypeCatalog.Entry bodyType(@Nonnull UUID uuid) {
+        return catalog.byChoice(choice(uuid));
+    }
+
+    void setEnabled(@Nonnull UUID uuid, boolean enabled) {
+        select(uuid, enabled ? defaultChoice : BodyTypeCatalog.NONE);
+    }
+
+    void toggle(@Nonnull UUID uuid) {
+        byte on = defaultChoice;
+        playerStates.update(uuid, state -> withChoice(state, choiceOf(state) == BodyTypeCatalog.NONE ? on : BodyTypeCatalog.NONE));
+    }
+
+    void select(@Nonnull UUID uuid, byte choice) {
+        playerStates.update(uuid, state -> withChoice(state, choice));
+    }
+
+    /**
+     * Moves to the next body type in file order (from off: the first one).
+     */
+    void cycle(@Nonnull UUID uuid) {
+        BodyTypeCatalog bodyTypes = catalog;
+        playerStates.update(uuid, state -> withChoice(state, bodyTypes.next(choiceOf(state))));
+    }
+
+    /**
+     * Body characteristic the player should currently have, or null when off with nothing to restore.
+     */
+    String desiredBodyId(@Nonnull UUID uuid) {
+        BodyTypeCatalog.Entry chosen = bodyType(uuid);
+        return (chosen != null) ? chosen.id() : restoreBodyId(uuid);
+    }
+
+    private static byte choiceOf(int state) {
+        return (byte) state;
+    }
+
+    private static int restoreOf(int state) {
+        return (state >>> 8) & 0xFF;
+    }
+
+    private static short withChoice(int state, byte choice) {
+        return (short) ((state & 0xFF00) | (choice & 0xFF));
+    }
+
+    private static short withRestore(int state, int restore) {
+        return (short) ((restore & 0xFF) << 8 | (state & 0xFF));
+    }
+
+    /**
+     * True when the player's skin already carries {@link #desiredBodyId}, or there is nothing to apply.
+     */
+    boolean isUpToDate(@Nonnull PlayerHandle handle) {
+        if (!playerStates.isResident(handle.uuid())) return false;
+
+        String desired = desiredBodyId(handle.uuid());
+        if (desired == null) return true;
+
+        Object player = handle.player();
+        if (player == null) return false;
+
+        SkinAccessor skins = SkinAccessor.forPlayer(player.getClass());
+        Object skin = skins.readSkin(player);
+        return skin != null && desired.equals(skins.readBodyCharacteristicId(skin));
+    }
+
+    /**
+     * Swaps the player's body to their current choice (or back to what they had when off). Refused
+     * while their state is not resident: it would read as off and restore the default body.
+     */
+    ApplyResult apply(@Nonnull PlayerHandle handle) {
+        if (!playerStates.isResident(handle.uuid())) {
+            playerStates.prefetch(handle.uuid());
+            HBTLog.debug("State of %s not loaded yet, not applying", handle.username());
+            return ApplyResult.NOT_LOADED;
+        }
+
+        // null: restore what the player had before
+        BodyTypeCatalog.Entry chosen = bodyType(handle.uuid());
+        String target = (chosen != null) ? chosen.id() : null;
+        if (target == null && awaitingRestoreId(handle)) {
+            HBTLog.debug("Restore id of %s not read yet, not applying", handle.username());
+            return ApplyResult.NOT_LOADED;
+        }
+
+        long start = System.nanoTime();
+        ApplyResult result = trySwapBodyCharacteristic(handle, target);
+        metrics.apply.recordSince(start);
+        switch (result) {
+            case APPLIED -> metrics.applied();
+            case UNCHANGED -> metrics.unchanged();
+            case FAILED -> HBTLog.warn("Could not apply bodyCharacteristic swap for %s.", handle.username());
+        }
+        return result;
+    }
+
+    /**
+     * Attempts to:
+     * 1) locate current PlayerSkin object
+     * 2) build a new PlayerSkin (same values, different bodyCharacteristic; null newBodyId restores the previous one)
+     * 3) apply it via a set/apply method
+     * <p>
+     * Steps 2 and 3, and the appearance update every nearby client would process, are skipped when the
+     * skin already carries the target body.
+     * <p>
+     * This is reflection-based so it won't crash if names differ; it will just fail gracefully.
+     */
+    private ApplyResult trySwapBodyCharacteristic(PlayerHandle handle, String newBodyId) {
+        try {
+            Object player = handle.player();
+            if (player == null) {
+                metrics.failed(HBTMetrics.Failure.PLAYER_MISSING);
+                return ApplyResult.FAILED;
+            }
+
+            SkinAccessor skins = SkinAccessor.forPlayer(player.getClass());
+            if (!skins.isResolved()) {
+                metrics.failed(skins.failureCause());
+                HBTLog.warn("PlayerSkin API unavailable: %s", skins.failure());
+                return ApplyResult.FAILED;
+            }
+
+            Object skin = skins.readSkin(player);
+            if (skin == null) {
+                metrics.failed(HBTMetrics.Failure.SKIN_NOT_FOUND);
+                HBTLog.warn("PlayerSkin not found on Player via reflection.");
+                return ApplyResult.FAILED;
+            }
+
+            String currentBody = skins.readBodyCharacteristicId(skin);
+            UUID uuid = handle.uuid();
+
+            // Remember old value once (only when switching ON)
+            if (newBodyId != null) {
+                if (currentBody != null && !currentBody.isEmpty() && !newBodyId.equals(currentBody) && !BODY_BUST.equals(currentBody)) {
+                    rememberRestore(uuid, currentBody);
+                }
+            }
+
+            // If switching OFF, try to restore previous (if known)
+            boolean restoring = false;
+            if (newBodyId == null) {
+                String prev = restoreBodyId(uuid);
+                restoring = prev != null;
+                newBodyId = restoring ? prev : BODY_DEFAULT;
+            }
+
+            if (newBodyId.equals(currentBody)) {
+                HBTLog.debug("bodyCharacteristic=%s already on %s", newBodyId, handle.username());
+                if (restoring) {
+                    clearRestore(uuid);
+                }
+                return ApplyResult.UNCHANGED;
+            }
+
+            long rebuildStart = System.nanoTime();
+            Object newSkin = skins.rebuild(skin, newBodyId, skinCache);
+            metrics.skinRebuild.recordSince(rebuildStart);
+            if (newSkin == null) {
+                metrics.failed(HBTMetrics.Failure.REBUILD_FAILED);
+                HBTLog.warn("Failed to rebuild PlayerSkin with new bodyCharacteristic.");
+                return ApplyResult.FAILED;
+            }
+
+            // Apply skin
+            if (skins.apply(player, newSkin)) {
+                HBTLog.debug("Applied bodyCharacteristic=%s to %s", newBodyId, handle.username());
+                if (restoring) {
+                    clearRestore(uuid);
+                }
+                return ApplyResult.APPLIED;
+            }
+
+            metrics.failed(HBTMetrics.Failure.APPLY_FAILED);
+            HBTLog.warn("Applying PlayerSkin onto Player failed.");
+            return ApplyResult.FAILED;
+
+        } catch (Throwable t) {
+            metrics.failed(HBTMetrics.Failure.EXCEPTION);
+            HBTLog.warn("Exception while applying bodyCharacteristic: %s", t);
+            return ApplyResult.FAILED;
+        }
+    }
+
+    // Back to their own body; the next switch ON remembers it afresh
+    private void clearRestore(UUID uuid) {
+        playerStates.update(uuid, state -> choiceOf(state) == BodyTypeCatalog.NONE ? withRestore(state, 0) : state);
+    }
+
+    private void rememberRestore(UUID uuid, String bodyId) {
+        if (restoreOf(playerStates.get(uuid)) != 0) return;
+
+        int known = bodyIds.ordinal(bodyId);
+        if (known >= 0) {
+            recordRestore(uuid, known);
+            return;
+        }
+        // New to the table: assigning it writes the shared file under its lock
+        playerStates.runOnLoader(() -> {
+            try {
+                int ordinal = bodyIds.intern(bodyId);
+                if (ordinal >= 0) recordRestore(uuid, ordinal);
+            } catch (IOException e) {
+                HBTLog.warn("Could not record body id %s: %s", bodyId, e);
+            }
+        });
+    }
+
+    // Only while still switched on: once off, the body it would restore has already been chosen
+    private void recordRestore(UUID uuid, int ordinal) {
+        try {
+            playerStates.update(uuid, state -> restoreOf(state) == 0 && choiceOf(state) != BodyTypeCatalog.NONE ? withRestore(state, ordinal + 1) : state);
+        } catch (IllegalStateException e) {
+            HBTLog.debug("%s left before body id %d was recorded", uuid, ordinal);
+        }
+    }
+
+    /**
+     * True when the player's restore ordinal was assigned by another node since the table was last
+     * read. The table is re-read on the loader threads and the player applied again from there; an
+     * ordinal still unknown after that is dropped, so they get the default body.
+     */
+    private boolean awaitingRestoreId(PlayerHandle handle) {
+        UUID uuid = handle.uuid();
+        int restore = restoreOf(playerStates.get(uuid));
+        if (restore == 0 || bodyIds.id(restore - 1) != null) return false;
+
+        playerStates.runOnLoader(() -> {
+            if (bodyIds.refresh(restore - 1) == null) {
+                HBTLog.warn("Unknown body id ordinal %d for %s, restoring the default", restore - 1, handle.username());
+                try {
+                    playerStates.update(uuid, state -> restoreOf(state) == restore ? withRestore(state, 0) : state);
+                } catch (IllegalStateException e) {
+                    return;
+                }
+            }
+            handle.execute(() -> {
+                if (handle.isValid()) apply(handle);
+            });
+        });
+        return true;
+    }
+}
@@ -0,0 +1,263 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Re-applies every online player's body type, a few at a time.
+ * <p>
+ * Each world gets at most one batch in flight; a batch runs on the world thread and stops after
+ * {@code maxPlayersPerTick} players or {@code budgetMicros}, whichever comes first. A ticker posts
+ * the next batch every {@code intervalMs}, so a full server is spread over many ticks instead of
+ * stalling one. Players whose skin already matches are skipped without rebuilding anything.
+ * <p>
+ * Players whose state is not resident yet (e.g. right after a plugin reload) have it loaded and go
+ * back to the end of their world's queue until it is, or until {@code maxWaitMs} into the run.
+ * <p>
+ * A world that takes a batch and hasn't run it after {@code batchTimeoutMs} is given up on: the batch
+ * counts as failed and the run goes on (and finishes) without that world.
+ */
+final class BulkApplier {
+
+    private static final long PROGRESS_EVERY_MS = 2000;
+
+    private final BodyTypeService service;
+    private final PlayerStateCache states;
+    private final Supplier<? extends Collection<? extends WorldHandle>> allWorlds;
+    private final int maxPlayersPerTick;
+    private final long budgetNanos;
+    private final long intervalMs;
+    private final long maxWaitNanos;
+    private final long batchTimeoutNanos;
+
+    private final AtomicReference<Run> current = new AtomicReference<>();
+    private final ScheduledExecutorService ticker;
+
+    /**
+     * @param allWorlds the worlds a run covers, asked once per run
+     */
+    BulkApplier(@Nonnull BodyTypeService service, @Nonnull Supplier<? extends Collection<? extends WorldHandle>> allWorlds, int maxPlayersPerTick, long budgetMicros, long intervalMs, long maxWaitMs, long batchTimeoutMs) {
+        this.service = service;
+        this.states = service.playerStates();
+        this.allWorlds = allWorlds;
+        this.maxPlayersPerTick = Math.max(1, maxPlayersPerTick);
+        this.budgetNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1, budgetMicros));
+        this.intervalMs = Math.max(1, intervalMs);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, maxWaitMs));
+        this.batchTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, batchTimeoutMs));
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "HBT-BulkApply");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    static BulkApplier fromConfig(@Nonnull BodyTypeService service, @Nonnull HBTConfig config) {
+        return new BulkApplier(service, ServerWorldHandle::all, config.getInt("bulkApply.maxPlayersPerTick", 20), config.getLong("bulkApply.budgetMicros", 2000), config.getLong("bulkApply.intervalMs", 50), config.getLong("bulkApply.maxWaitMs", 30000), config.getLong("bulkApply.batchTimeoutMs", 10000));
+    }
+
+    /**
+     * @param progress called from the ticker thread with a status line every few seconds and once at the end
+     * @return false if a run is already going
+     */
+    boolean start(@Nonnull Consumer<String> progress) {
+        List<WorldQueue> worlds = new ArrayList<>();
+        for (WorldHandle world : allWorlds.get()) {
+            worlds.add(new WorldQueue(world));
+        }
+
+        Run run = new Run(worlds, progress);
+        if (!current.compareAndSet(null, run)) return false;
+
+        run.task = ticker.scheduleWithFixedDelay(run::tick, 0, intervalMs, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Stops after the batches already on world threads; players done so far stay applied.
+     */
+    boolean cancel() {
+        Run run = current.get();
+        if (run == null) return false;
+
+        run.cancelled = true;
+        return true;
+    }
+
+    /**
+     * Status of the running bulk apply, or null.
+     */
+    String status() {
+        Run run = current.get();
+        return (run != null) ? run.status() : null;
+    }
+
+    void close() {
+        cancel();
+        ticker.shutdownNow();
+    }
+
+    private final class Run {
+        final List<WorldQueue> worlds;
+        final Consumer<String> progress;
+        final long started = System.nanoTime();
+
+        final AtomicInteger total = new AtomicInteger();
+        final LongAdder applied = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder lostBatches = new LongAdder();
+
+        volatile boolean cancelled;
+        volatile ScheduledFuture<?> task;
+        long lastProgress = System.nanoTime();
+
+        Run(List<WorldQueue> worlds, Consumer<String> progress) {
+            this.worlds = worlds;
+            this.progress = progress;
+        }
+
+        // Ticker thread only
+        void tick() {
+            // start() hasn't stored the handle yet
+            if (task == null) return;
+
+            boolean done = true;
+            long now = System.nanoTime();
+            for (WorldQueue q : worlds) {
+                if (q.done) continue;
+                if (q.inFlight.get()) {
+                    if (now - q.postedNanos >= batchTimeoutNanos) q.abandon(this);
+                    if (q.done) continue;
+                }
+                done = false;
+                if (!cancelled && q.inFlight.compareAndSet(false, true)) {
+                    q.postedNanos = now;
+                    try {
+                        q.world.execute(() -> q.batch(this));
+                    } catch (RuntimeException e) {
+                        // world went away
+                        q.done = true;
+                        q.inFlight.set(false);
+                    }
+                }
+            }
+
+            boolean idle = worlds.stream().noneMatch(q -> q.inFlight.get());
+            if ((done || cancelled) && idle) {
+                task.cancel(false);
+                current.compareAndSet(this, null);
+                progress.accept((cancelled ? "Bulk apply cancelled: " : "Bulk apply done: ") + status());
+                return;
+            }
+
+            if (now - lastProgress >= TimeUnit.MILLISECONDS.toNanos(PROGRESS_EVERY_MS)) {
+                lastProgress = now;
+                progress.accept("Bulk apply: " + status());
+            }
+        }
+
+        String status() {
+            long a = applied.sum();
+            long s = skipped.sum();
+            long f = failed.sum();
+            long lost = lostBatches.sum();
+            return String.format("%d/%d players (%d applied, %d skipped, %d failed) in %d ms%s", a + s + f, total.get(), a, s, f, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), (lost > 0) ? ", " + lost + " world batches never ran" : "");
+        }
+    }
+
+    private final class WorldQueue {
+        final WorldHandle world;
+        final AtomicBoolean inFlight = new AtomicBoolean();
+        // Ticker thread
+        long postedNanos;
+        // Filled on the world thread by the first batch
+        ArrayDeque<PlayerHandle> players;
+        volatile boolean done;
+
+        WorldQueue(WorldHandle world) {
+            this.world = world;
+        }
+
+        // Ticker thread; if the batch still runs later it finds the world given up on and does nothing
+        void abandon(Run run) {
+            done = true;
+            run.lostBatches.increment();
+            inFlight.set(false);
+            HBTLog.warn("A world did not run its bulk apply batch within bulkApply.batchTimeoutMs, leaving its players as they are");
+        }
+
+        // World thread
+        void batch(Run run) {
+            if (done) return;
+            try {
+                if (players == null) {
+                    players = new ArrayDeque<>(world.players());
+                    run.total.addAndGet(players.size());
+                }
+
+                long deadline = System.nanoTime() + budgetNanos;
+                List<PlayerHandle> notYet = new ArrayList<>();
+                for (int n = 0; n < maxPlayersPerTick && !run.cancelled; n++) {
+                    PlayerHandle player = players.poll();
+                    if (player == null) break;
+                    if (!apply(run, player)) notYet.add(player);
+                    if (System.nanoTime() >= deadline) break;
+                }
+                players.addAll(notYet);
+                if (players.isEmpty()) done = true;
+            } finally {
+                inFlight.set(false);
+            }
+        }
+
+        /**
+         * @return false if the player's state is still loading and they should be tried again later
+         */
+        private boolean apply(Run run, PlayerHandle player) {
+            if (!player.isValid()) {
+                // left meanwhile
+                run.skipped.increment();
+                return true;
+            }
+
+            // Not resident reads as off, which would look up to date or restore the default body
+            UUID uuid = player.uuid();
+            if (!states.isResident(uuid)) {
+                if (System.nanoTime() - run.started < maxWaitNanos) {
+                    states.prefetch(uuid);
+                    return false;
+                }
+                HBTLog.warn("State of %s did not load in time, bulk apply left them as they are", player.username());
+                run.failed.increment();
+                return true;
+            }
+
+            if (service.isUpToDate(player)) {
+                run.skipped.increment();
+                return true;
+            }
+            switch (service.apply(player)) {
+                case APPLIED, UNCHANGED -> run.applied.increment();
+                // applied again once what it waits on is read
+                case NOT_LOADED -> run.skipped.increment();
+                case FAILED -> run.failed.increment();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Re-parses the body characteristic definition when it changes on disk.
+ * <p>
+ * Parsing happens on the watcher thread; the finished catalog is handed to {@code onReload}
+ * in one piece, so readers only ever see the old or the new table. A file that fails to parse
+ * keeps the current catalog.
+ */
+final class CatalogWatcher {
+
+    // Editors often write a file in several steps; wait for them to settle
+    private static final long SETTLE_MS = 250;
+
+    private final Path jsonFile;
+    private final BodyIdTable ids;
+    private final Consumer<BodyTypeCatalog> onReload;
+
+    private final LongAdder reloads = new LongAdder();
+    private volatile WatchService watcher;
+
+    CatalogWatcher(@Nonnull Path jsonFile, @Nonnull BodyIdTable ids, @Nonnull Consumer<BodyTypeCatalog> onReload) {
+        this.jsonFile = jsonFile;
+        this.ids = ids;
+        this.onReload = onReload;
+    }
+
+    void start() throws IOException {
+        if (watcher != null) return;
+
+        WatchService ws = FileSystems.getDefault().newWatchService();
+        jsonFile.toAbsolutePath().getParent().register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watcher = ws;
+
+        Thread t = new Thread(this::run, "HBT-CatalogWatcher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    void close() {
+        WatchService ws = watcher;
+        watcher = null;
+        if (ws == null) return;
+
+        try {
+            ws.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    long reloads() {
+        return reloads.sum();
+    }
+
+    private void run() {
+        Path name = jsonFile.getFileName();
+        try {
+            while (true) {
+                WatchService ws = watcher;
+                if (ws == null) return;
+
+                WatchKey key = ws.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (name.equals(event.context())) changed = true;
+                }
+                key.reset();
+                if (!changed) continue;
+
+                // Fold the burst of events a single save produces into one reload
+                TimeUnit.MILLISECONDS.sleep(SETTLE_MS);
+                WatchKey more;
+                while ((more = ws.poll()) != null) {
+                    more.pollEvents();
+                    more.reset();
+                }
+
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // closed
+        }
+    }
+
+    private void reload() {
+        long start = System.nanoTime();
+        try {
+            BodyTypeCatalog catalog = BodyTypeCatalog.load(jsonFile, ids);
+            onReload.accept(catalog);
+            reloads.increment();
+            HBTLog.info("Reloaded %d body types from %s in %d ms", catalog.entries().size(), jsonFile, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            HBTLog.warn("Keeping current body types, could not reload %s: %s", jsonFile, e);
+        }
+    }
+}
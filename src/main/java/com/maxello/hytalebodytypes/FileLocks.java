@@ -0,0 +1,37 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exclusive locks on files that several server nodes (or plugin instances) share.
+ * <p>
+ * A {@link FileLock} belongs to the whole JVM and overlapping ones throw, so callers in the same
+ * JVM first take a monitor per lock file, then the file lock for the other processes.
+ */
+final class FileLocks {
+
+    private static final ConcurrentHashMap<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+    private FileLocks() {
+    }
+
+    interface IOAction<T> {
+        T run() throws IOException;
+    }
+
+    static <T> T withLock(@Nonnull Path lockFile, @Nonnull IOAction<T> action) throws IOException {
+        Object monitor = MONITORS.computeIfAbsent(lockFile.toAbsolutePath().normalize(), p -> new Object());
+        synchronized (monitor) {
+            // closing the channel releases the lock
+            try (FileChannel ch = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                ch.lock();
+                return action.run();
+            }
+        }
+    }
+}
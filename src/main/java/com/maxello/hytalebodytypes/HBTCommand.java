@@ -33,6 +33,10 @@ public final class HBTCommand extends AbstractPlayerCommand {
             ctx.sendMessage(Message.raw("Error: Player component not found.").color("#ff6b6b"));
             return;
         }
+        if (!plugin.isReady()) {
+            ctx.sendMessage(plugin.notReadyMessage());
+            return;
+        }
 
         plugin.debugPlayerCosmetics(player);
 
@@ -43,7 +47,7 @@ public final class HBTCommand extends AbstractPlayerCommand {
 
         private final HytaleBodyTypes plugin;
 
-        private final RequiredArg<String> MODE = this.withRequiredArg("mode", "on/off/toggle/status/apply", ArgTypes.STRING);
+        private final RequiredArg<String> MODE = this.withRequiredArg("mode", "on/off/toggle/next/status/apply/stats/list/applyall/cancel or a body type id", ArgTypes.STRING);
 
         private ModeVariant(@Nonnull HytaleBodyTypes plugin) {
             super("Body type debug mode.");
@@ -52,37 +56,45 @@ public final class HBTCommand extends AbstractPlayerCommand {
 
         @Override
         protected void execute(@Nonnull CommandContext ctx, @Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+            if (!plugin.isReady()) {
+                ctx.sendMessage(plugin.notReadyMessage());
+                return;
+            }
+
             String mode = ctx.get(MODE);
             mode = (mode == null) ? "status" : mode.toLowerCase();
 
             switch (mode) {
-                case "on" -> {
-                    plugin.setEnabled(playerRef.getUuid(), true);
-                    plugin.applyBodyCharacteristic(store, ref, playerRef);
-                    ctx.sendMessage(Message.raw("Hytale Body Types: ON").color("#4aff7f"));
-                }
-                case "off" -> {
-                    plugin.setEnabled(playerRef.getUuid(), false);
-                    plugin.applyBodyCharacteristic(store, ref, playerRef);
-                    ctx.sendMessage(Message.raw("Hytale Body Types: OFF").color("#ff6b6b"));
+                case "applyall" -> {
+                    if (!isAdmin(ctx)) return;
+                    BulkApplier bulk = plugin.bulkApply();
+                    if (bulk.start(line -> ctx.sendMessage(Message.raw(line).color("#cbd5e0")))) {
+                        ctx.sendMessage(Message.raw("Re-applying body types to all online players...").color("#cbd5e0"));
+                    } else {
+                        ctx.sendMessage(Message.raw("Bulk apply already running: " + bulk.status()).color("#cbd5e0"));
+                    }
                 }
-                case "toggle" -> {
-                    plugin.toggle(playerRef.getUuid());
-                    plugin.applyBodyCharacteristic(store, ref, playerRef);
-                    boolean enabled = plugin.isEnabled(playerRef.getUuid());
-                    ctx.sendMessage(Message.raw("Hytale Body Types: " + (enabled ? "ON" : "OFF")).color(enabled ? "#4aff7f" : "#ff6b6b"));
-
-                }
-                case "apply" -> {
-                    plugin.applyBodyCharacteristic(store, ref, playerRef);
-                    ctx.sendMessage(Message.raw("Applied current HBT state.").color("#cbd5e0"));
+                case "cancel" -> {
+                    if (!isAdmin(ctx)) return;
+                    if (!plugin.bulkApply().cancel()) {
+                        ctx.sendMessage(Message.raw("No bulk apply running.").color("#cbd5e0"));
+                    }
                 }
-                case "status" -> {
-                    boolean enabled = plugin.isEnabled(playerRef.getUuid());
-                    ctx.sendMessage(Message.raw("Hytale Body Types: " + (enabled ? "ON" : "OFF")).color(enabled ? "#4aff7f" : "#ff6b6b"));
+                case "stats" -> {
+                    for (String line : plugin.metrics().report()) {
+                        ctx.sendMessage(Message.raw(line).color("#cbd5e0"));
+                    }
                 }
-                default -> ctx.sendMessage(Message.raw("Use: /bodytype on|off|toggle|status|apply").color("#ff6b6b"));
+                // the player's own modes, see BodyTypeActions
+                default -> plugin.playerActions().runMode(mode, new ServerPlayerHandle(store, ref, playerRef));
             }
         }
+
+        private boolean isAdmin(@Nonnull CommandContext ctx) {
+            if (ctx.sender().hasPermission(HytaleBodyTypes.ADMIN_PERMISSION)) return true;
+
+            ctx.sendMessage(Message.raw("You need " + HytaleBodyTypes.ADMIN_PERMISSION + " for that.").color("#ff6b6b"));
+            return false;
+        }
     }
 }
@@ -0,0 +1,64 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Optional plugin settings from {@code plugins/HytaleBodyTypes/config.properties}.
+ * Missing file or keys fall back to the defaults passed by the caller.
+ */
+final class HBTConfig {
+
+    private final Properties props;
+
+    private HBTConfig(Properties props) {
+        this.props = props;
+    }
+
+    static HBTConfig load(@Nonnull Path file) {
+        Properties props = new Properties();
+        if (Files.exists(file)) {
+            try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                props.load(r);
+            } catch (IOException e) {
+                HBTLog.warn("Could not read %s, using defaults: %s", file, e);
+            }
+        }
+        return new HBTConfig(props);
+    }
+
+    String getString(@Nonnull String key, String def) {
+        String v = props.getProperty(key);
+        return (v == null || v.isBlank()) ? def : v.trim();
+    }
+
+    int getInt(@Nonnull String key, int def) {
+        try {
+            return Integer.parseInt(getString(key, Integer.toString(def)));
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    long getLong(@Nonnull String key, long def) {
+        try {
+            return Long.parseLong(getString(key, Long.toString(def)));
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    <E extends Enum<E>> E getEnum(@Nonnull String key, @Nonnull E def) {
+        try {
+            return Enum.valueOf(def.getDeclaringClass(), getString(key, def.name()).toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return def;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Leveled, rate-limited logger that formats and prints on a background thread.
+ * <p>
+ * Callers only check the level and enqueue; formatting and the synchronized stdout write happen
+ * on the writer. Above {@code log.maxPerSecond} DEBUG and INFO lines are dropped and summarized, and
+ * a full queue drops them instead of blocking the world thread; WARN and ERROR are never rate
+ * limited and are printed by the caller when the queue is full. {@link #close()} drains the queue
+ * and stops the writer, after which lines are printed by the caller.
+ */
+final class HBTLog {
+
+    enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private static final PrintStream OUT = System.out;
+    private static final BlockingQueue<Line> QUEUE = new ArrayBlockingQueue<>(1024);
+
+    private static volatile Level minLevel = Level.INFO;
+    private static volatile int maxPerSecond = 50;
+
+    private static final AtomicLong windowStart = new AtomicLong();
+    private static final AtomicLong inWindow = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+
+    private static final Thread WRITER = new Thread(HBTLog::drain, "HBT-Log");
+    private static volatile boolean closed;
+
+    static {
+        WRITER.setDaemon(true);
+        WRITER.start();
+    }
+
+    private HBTLog() {
+    }
+
+    static void configure(@Nonnull HBTConfig config) {
+        minLevel = config.getEnum("log.level", Level.INFO);
+        maxPerSecond = Math.max(1, config.getInt("log.maxPerSecond", 50));
+    }
+
+    static boolean isEnabled(@Nonnull Level level) {
+        return level.ordinal() >= minLevel.ordinal();
+    }
+
+    static void debug(@Nonnull String format, Object... args) {
+        log(Level.DEBUG, format, args);
+    }
+
+    static void info(@Nonnull String format, Object... args) {
+        log(Level.INFO, format, args);
+    }
+
+    static void warn(@Nonnull String format, Object... args) {
+        log(Level.WARN, format, args);
+    }
+
+    static void error(@Nonnull String format, Object... args) {
+        log(Level.ERROR, format, args);
+    }
+
+    static long droppedLines() {
+        return dropped.get();
+    }
+
+    /**
+     * Prints what is queued and stops the writer thread, e.g. on plugin shutdown so a reload
+     * doesn't leave it (and this class loader) behind.
+     */
+    static void close() {
+        closed = true;
+        WRITER.interrupt();
+        try {
+            WRITER.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void log(Level level, String format, Object[] args) {
+        if (!isEnabled(level)) return;
+
+        Line line = new Line(level, format, args);
+        if (closed) {
+            print(line);
+            return;
+        }
+
+        boolean important = level.ordinal() >= Level.WARN.ordinal();
+        if (!important) {
+            long now = System.nanoTime();
+            long start = windowStart.get();
+            if (now - start >= TimeUnit.SECONDS.toNanos(1) && windowStart.compareAndSet(start, now)) {
+                inWindow.set(0);
+            }
+            if (inWindow.incrementAndGet() > maxPerSecond) {
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+        if (!QUEUE.offer(line)) {
+            if (important) {
+                print(line);
+            } else {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    private static void drain() {
+        long reportedDrops = 0;
+        while (true) {
+            Line line;
+            try {
+                line = QUEUE.take();
+            } catch (InterruptedException e) {
+                // closing: print what is left
+                while ((line = QUEUE.poll()) != null) {
+                    print(line);
+                }
+                return;
+            }
+
+            long drops = dropped.get();
+            if (drops != reportedDrops) {
+                OUT.println("[HBT] WARN (" + (drops - reportedDrops) + " log lines suppressed)");
+                reportedDrops = drops;
+            }
+            print(line);
+        }
+    }
+
+    private static void print(Line line) {
+        try {
+            String message = (line.args.length == 0) ? line.format : String.format(line.format, line.args);
+            OUT.println("[HBT] " + (line.level == Level.INFO ? "" : line.level + " ") + message);
+        } catch (RuntimeException e) {
+            OUT.println("[HBT] ERROR Bad log line: " + e);
+        }
+    }
+
+    private record Line(Level level, String format, Object[] args) {
+    }
+}
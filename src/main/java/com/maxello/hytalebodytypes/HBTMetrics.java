@@ -0,0 +1,96 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and latency histograms for the plugin's hot paths, reported by {@code /bodytype stats}
+ * and the periodic metrics.txt dump.
+ */
+final class HBTMetrics {
+
+    enum Failure {
+        PLAYER_MISSING, SKIN_NOT_FOUND, CONSTRUCTOR_MISSING, APPLY_METHOD_MISSING, REBUILD_FAILED, APPLY_FAILED, EXCEPTION
+    }
+
+    final LatencyHistogram apply = new LatencyHistogram();
+    final LatencyHistogram skinRebuild = new LatencyHistogram();
+    final LatencyHistogram persistFlush = new LatencyHistogram();
+    final LatencyHistogram stateLoad = new LatencyHistogram();
+    final LatencyHistogram uiRefresh = new LatencyHistogram();
+    final LatencyHistogram joinWait = new LatencyHistogram();
+
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+    private final EnumMap<Failure, LongAdder> failures = new EnumMap<>(Failure.class);
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+
+    HBTMetrics() {
+        for (Failure f : Failure.values()) {
+            failures.put(f, new LongAdder());
+        }
+    }
+
+    void applied() {
+        applied.increment();
+    }
+
+    /**
+     * An apply that found the target body already in place and sent nothing.
+     */
+    void unchanged() {
+        unchanged.increment();
+    }
+
+    void failed(@Nonnull Failure cause) {
+        failures.get(cause).increment();
+    }
+
+    long failures(@Nonnull Failure cause) {
+        return failures.get(cause).sum();
+    }
+
+    /**
+     * Adds a value read at report time, e.g. a counter owned by another component.
+     */
+    synchronized void gauge(@Nonnull String name, @Nonnull LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    synchronized List<String> report() {
+        List<String> lines = new ArrayList<>();
+        lines.add(timer("apply", apply));
+        lines.add(timer("skin rebuild", skinRebuild));
+        lines.add(timer("persist flush", persistFlush));
+        lines.add(timer("state load", stateLoad));
+        lines.add(timer("ui refresh", uiRefresh));
+        lines.add(timer("join wait", joinWait));
+
+        StringBuilder sb = new StringBuilder("applied=").append(applied.sum()).append(" unchanged=").append(unchanged.sum());
+        for (Map.Entry<Failure, LongAdder> e : failures.entrySet()) {
+            long n = e.getValue().sum();
+            if (n != 0) sb.append(' ').append(e.getKey().name().toLowerCase()).append('=').append(n);
+        }
+        lines.add(sb.toString());
+
+        for (Map.Entry<String, LongSupplier> e : gauges.entrySet()) {
+            lines.add(e.getKey() + "=" + e.getValue().getAsLong());
+        }
+        return lines;
+    }
+
+    private static String timer(String name, LatencyHistogram h) {
+        return String.format("%s: n=%d mean=%s p50=%s p99=%s max=%s", name, h.count(), micros(h.meanNanos()), micros(h.percentileNanos(50)), micros(h.percentileNanos(99)), micros(h.maxNanos()));
+    }
+
+    private static String micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos) + "us";
+    }
+}
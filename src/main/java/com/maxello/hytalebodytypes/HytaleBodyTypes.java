@@ -2,35 +2,50 @@ package com.maxello.hytalebodytypes;
 
 import com.hypixel.hytale.component.Ref;
 import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.event.events.player.PlayerConnectEvent;
+import com.hypixel.hytale.server.core.event.events.player.PlayerDisconnectEvent;
 import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.*;
-import java.util.Map;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public final class HytaleBodyTypes extends JavaPlugin {
 
-    // Your cosmetic IDs
-    private static final String BODY_DEFAULT = "Default";
-    private static final String BODY_BUST = "HBT_Bust";
-    // Persisted toggle state
-    private final ConcurrentHashMap<UUID, Boolean> enabledByPlayer = new ConcurrentHashMap<>();
-    // Optional: remember what the player had before we overwrote it (per session)
-    private final ConcurrentHashMap<UUID, String> previousBodyCharacteristic = new ConcurrentHashMap<>();
-    private Path dataFile;
+    static final String ADMIN_PERMISSION = "hytalebodytypes.admin";
+    static final String LOADING_MESSAGE = "Hytale Body Types is still loading, try again in a moment.";
+    static final String STARTUP_FAILED_MESSAGE = "Hytale Body Types failed to start, see the server log.";
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    // Join/leave events that arrived before warmup finished, in arrival order; null once drained
+    private final Object startupLock = new Object();
+    private List<Runnable> beforeReady = new ArrayList<>();
+    private final HBTMetrics metrics = new HBTMetrics();
+    private ScheduledExecutorService metricsDump;
+    private CatalogWatcher catalogWatcher;
+    private volatile BulkApplier bulkApply;
+    private volatile JoinApplyQueue joinApply;
+    private volatile StatePersister persister;
+    // Player state, catalog and the apply path; null until warmup opened player state
+    private volatile BodyTypeService bodyTypes;
+    private volatile BodyTypeActions playerActions;
 
     public HytaleBodyTypes(@Nonnull JavaPluginInit init) {
         super(init);
@@ -40,338 +55,330 @@ public final class HytaleBodyTypes extends JavaPlugin {
     protected void setup() {
         super.setup();
 
-        System.out.println("[HBT] LOADED BUILD MARKER: 2026-01-15-TEST-1");
-        Path dataDir = Paths.get("plugins", "HytaleBodyTypes");
-        try {
-            Files.createDirectories(dataDir);
-        } catch (IOException ignored) {
-        }
+        long start = System.nanoTime();
 
-        this.dataFile = dataDir.resolve("player_state.json");
-        loadState();
+        // Join/leave before warmup finished are replayed in order once state is open
+        this.getEventRegistry().register(PlayerConnectEvent.class, event -> {
+            PlayerRef playerRef = event.getPlayerRef();
+            afterStartup(() -> playerJoined(playerRef));
+        });
+        this.getEventRegistry().register(PlayerDisconnectEvent.class, event -> {
+            UUID uuid = event.getPlayerRef().getUuid();
+            afterStartup(() -> bodyTypes.playerStates().playerLeft(uuid));
+        });
 
         this.getCommandRegistry().registerCommand(new HBTCommand(this));
-        System.out.println("[HBT] Loaded. Asset bodyCharacteristic id = " + BODY_BUST);
-    }
-
-    public boolean isEnabled(@Nonnull UUID uuid) {
-        return enabledByPlayer.getOrDefault(uuid, false);
-    }
-
-    public void setEnabled(@Nonnull UUID uuid, boolean enabled) {
-        enabledByPlayer.put(uuid, enabled);
-        saveState();
-    }
 
-    public void toggle(@Nonnull UUID uuid) {
-        boolean newValue = !isEnabled(uuid);
-        enabledByPlayer.put(uuid, newValue);
-        saveState();
+        Thread.ofVirtual().name("HBT-Startup").start(this::warmup);
+        HBTLog.info("Loaded. Asset bodyCharacteristic id = %s (setup %d ms, warmup continues in background)", BodyTypeService.BODY_BUST, millisSince(start));
     }
 
     /**
-     * Call this after toggling to apply the appearance swap immediately.
+     * Disk I/O and reflection that used to run inline in setup().
      */
-    public void applyNow(@Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef) {
-        boolean enabled = isEnabled(playerRef.getUuid());
-        String target = enabled ? BODY_BUST : BODY_DEFAULT;
-
-        boolean ok = trySwapBodyCharacteristic(store, ref, playerRef, target);
-        if (!ok) {
-            System.out.println("[HBT] Could not apply bodyCharacteristic swap (API not found yet).");
-        }
-    }
-
-    /**
-     * Attempts to:
-     * 1) locate current PlayerSkin object
-     * 2) build a new PlayerSkin (same values, different bodyCharacteristic)
-     * 3) apply it via a set/apply method
-     * <p>
-     * This is reflection-based so it won't crash if names differ; it will just fail gracefully.
-     */
-    private boolean trySwapBodyCharacteristic(Store<EntityStore> store, Ref<EntityStore> ref, PlayerRef playerRef, String newBodyId) {
+    private void warmup() {
         try {
-            Player player = store.getComponent(ref, Player.getComponentType());
-            if (player == null) return false;
-
-
-            Object skin = findPlayerSkin(player);
-            if (skin == null) {
-                System.out.println("[HBT] PlayerSkin not found on Player via reflection.");
-                return false;
+            long t = System.nanoTime();
+            Path dataDir = Paths.get("plugins", "HytaleBodyTypes");
+            try {
+                Files.createDirectories(dataDir);
+            } catch (IOException ignored) {
             }
-
-            // Remember old value once (only when switching ON)
-            if (BODY_BUST.equals(newBodyId)) {
-                String currentBody = readBodyCharacteristicId(skin);
-                if (currentBody != null && !currentBody.isEmpty() && !BODY_BUST.equals(currentBody)) {
-                    previousBodyCharacteristic.putIfAbsent(playerRef.getUuid(), currentBody);
-                }
+            HBTConfig config = HBTConfig.load(dataDir.resolve("config.properties"));
+            HBTLog.configure(config);
+            HBTLog.info("Startup: config %d ms", millisSince(t));
+
+            t = System.nanoTime();
+            Path catalogFile = dataDir.resolve("BodyCharacteristics.json");
+            // Stored states refer to these ids, so nodes sharing state share the table too
+            String sharedDir = config.getString("state.sharedDir", "");
+            BodyIdTable ids = new BodyIdTable((sharedDir.isEmpty() ? dataDir : Paths.get(sharedDir)).resolve("body_ids.txt"));
+            ids.load();
+            BodyTypeCatalog catalog = BodyTypeCatalog.load(catalogFile, ids);
+            HBTLog.info("Startup: %d body types %d ms", catalog.entries().size(), millisSince(t));
+
+            t = System.nanoTime();
+            PlayerStateCache states = new PlayerStateCache(dataDir, config, metrics);
+            try {
+                states.open();
+            } catch (IOException | RuntimeException e) {
+                // Running on would read everyone as off and write that over their stored choice
+                states.close();
+                throw new IOException("Could not open player state", e);
             }
-
-            // If switching OFF, try to restore previous (if known)
-            if (BODY_DEFAULT.equals(newBodyId)) {
-                String prev = previousBodyCharacteristic.get(playerRef.getUuid());
-                if (prev != null && !prev.isEmpty()) {
-                    newBodyId = prev;
+            StatePersister statePersister = StatePersister.fromConfig(states::flush, config, metrics);
+            states.onChange(statePersister::markDirty);
+            statePersister.start();
+            this.persister = statePersister;
+            HBTLog.info("Startup: player state %d ms", millisSince(t));
+
+            t = System.nanoTime();
+            SkinAccessor skins = SkinAccessor.forPlayer(Player.class);
+            HBTLog.info("Startup: skin API %d ms%s", millisSince(t), skins.isResolved() ? "" : " (unavailable: " + skins.failure() + ")");
+
+            SkinCache skinCache = new SkinCache(config.getInt("skinCache.size", 1024), SkinAccessor.constructorArgs());
+            BodyTypeService service = new BodyTypeService(states, ids, catalog, config.getString("bodyType.default", BodyTypeService.BODY_BUST), skinCache, metrics);
+            this.bodyTypes = service;
+            this.playerActions = new BodyTypeActions(service, new PlayerActionMailbox(service));
+
+            if (Boolean.parseBoolean(config.getString("bodyType.watch", "true"))) {
+                CatalogWatcher watcher = new CatalogWatcher(catalogFile, ids, service::reloadCatalog);
+                try {
+                    watcher.start();
+                    this.catalogWatcher = watcher;
+                } catch (IOException e) {
+                    HBTLog.warn("Could not watch %s: %s", catalogFile, e);
                 }
             }
 
-            Object newSkin = rebuildSkinWithBodyCharacteristic(skin, newBodyId);
-            if (newSkin == null) {
-                System.out.println("[HBT] Failed to rebuild PlayerSkin with new bodyCharacteristic.");
-                return false;
-            }
-
-            // Apply skin
-            if (applySkinToPlayer(player, newSkin)) {
-                System.out.println("[HBT] Applied bodyCharacteristic=" + newBodyId + " to " + playerRef.getUsername());
-                return true;
-            }
+            this.bulkApply = BulkApplier.fromConfig(service, config);
+            this.joinApply = JoinApplyQueue.fromConfig(service, metrics, config);
 
-            System.out.println("[HBT] Could not find a method to apply PlayerSkin onto Player.");
-            return false;
+            registerGauges();
+            startMetricsDump(dataDir.resolve("metrics.txt"), config.getLong("metrics.dumpIntervalSec", 60));
 
+            ready.complete(null);
+            drainStartupEvents();
+            // Hot reload: players already online never send a connect event
+            registerOnlinePlayers();
         } catch (Throwable t) {
-            System.out.println("[HBT] Exception while applying bodyCharacteristic: " + t);
-            return false;
+            HBTLog.error("Startup failed: %s", t);
+            ready.completeExceptionally(t);
+            synchronized (startupLock) {
+                beforeReady = null;
+            }
         }
     }
 
-    private Object findPlayerSkin(Object player) {
-        // 1) check fields
-        for (Field f : player.getClass().getDeclaredFields()) {
-            try {
-                if (!f.getType().getName().endsWith("PlayerSkin")) continue;
-                f.setAccessible(true);
-                Object v = f.get(player);
-                if (v != null) return v;
-            } catch (Throwable ignored) {
+    // Buffers until warmup drains the queue; dropped if startup failed
+    private void afterStartup(@Nonnull Runnable event) {
+        synchronized (startupLock) {
+            if (beforeReady != null) {
+                beforeReady.add(event);
+                return;
             }
         }
-
-        // 2) check getter-like methods
-        for (Method m : player.getClass().getMethods()) {
-            try {
-                if (m.getParameterCount() != 0) continue;
-                String n = m.getName().toLowerCase();
-                if (!n.contains("skin")) continue;
-                Object v = m.invoke(player);
-                if (v != null && v.getClass().getName().endsWith("PlayerSkin")) return v;
-            } catch (Throwable ignored) {
-            }
+        if (isReady()) {
+            event.run();
         }
-
-        return null;
     }
 
-    private String readBodyCharacteristicId(Object skin) {
-        try {
-            Method getBody = skin.getClass().getMethod("getBodyCharacteristic");
-            Object partId = getBody.invoke(skin);
-            if (partId == null) return null;
-
-            // PlayerSkinPartId has assetId field
-            Method getAssetId = partId.getClass().getMethod("getAssetId");
-            Object assetId = getAssetId.invoke(partId);
-            return (assetId != null) ? assetId.toString() : null;
-        } catch (Throwable ignored) {
-            return null;
+    private void drainStartupEvents() {
+        while (true) {
+            List<Runnable> batch;
+            synchronized (startupLock) {
+                batch = beforeReady;
+                if (batch.isEmpty()) {
+                    beforeReady = null;
+                    return;
+                }
+                // Events arriving while this batch runs queue behind it
+                beforeReady = new ArrayList<>();
+            }
+            for (Runnable event : batch) {
+                try {
+                    event.run();
+                } catch (RuntimeException e) {
+                    HBTLog.warn("Replaying a join/leave event failed: %s", e);
+                }
+            }
         }
     }
 
-    public void applyBodyCharacteristic(@Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef) {
-        // TODO: implement actual skin/body swap
-        System.out.println("[HBT] applyBodyCharacteristic called for " + playerRef.getUsername() + " enabled=" + isEnabled(playerRef.getUuid()));
-    }
-
-    private Object rebuildSkinWithBodyCharacteristic(Object skin, String newBodyId) {
+    // On each world thread, where the player list is current; joining twice is harmless
+    private void registerOnlinePlayers() {
         try {
-            // Read existing values through getters
-            String underwear = stringifyPartId(invokeNoArg(skin, "getUnderwear"));
-            String face = (String) invokeNoArg(skin, "getFace");
-            String ears = (String) invokeNoArg(skin, "getEars");
-            String mouth = (String) invokeNoArg(skin, "getMouth");
-
-            String eyes = stringifyPartId(invokeNoArg(skin, "getEyes"));
-            String facialHair = stringifyPartId(invokeNoArg(skin, "getFacialHair"));
-            String haircut = stringifyPartId(invokeNoArg(skin, "getHaircut"));
-            String eyebrows = stringifyPartId(invokeNoArg(skin, "getEyebrows"));
-            String pants = stringifyPartId(invokeNoArg(skin, "getPants"));
-            String overpants = stringifyPartId(invokeNoArg(skin, "getOverpants"));
-            String undertop = stringifyPartId(invokeNoArg(skin, "getUndertop"));
-            String overtop = stringifyPartId(invokeNoArg(skin, "getOvertop"));
-            String shoes = stringifyPartId(invokeNoArg(skin, "getShoes"));
-            String headAccessory = stringifyPartId(invokeNoArg(skin, "getHeadAccessory"));
-            String faceAccessory = stringifyPartId(invokeNoArg(skin, "getFaceAccessory"));
-            String earAccessory = stringifyPartId(invokeNoArg(skin, "getEarAccessory"));
-            String skinFeature = stringifyPartId(invokeNoArg(skin, "getSkinFeature"));
-            String gloves = stringifyPartId(invokeNoArg(skin, "getGloves"));
-            String cape = stringifyPartId(invokeNoArg(skin, "getCape"));
-
-            // Build new PlayerSkin using the String constructor:
-            // PlayerSkin(String bodyCharacteristic, String underwear, String face, String ears, String mouth, String eyes, ...)
-            Class<?> skinClass = skin.getClass();
-            Constructor<?> best = null;
-            for (Constructor<?> c : skinClass.getConstructors()) {
-                Class<?>[] ps = c.getParameterTypes();
-                if (ps.length == 20) {
-                    boolean allStrings = true;
-                    for (Class<?> p : ps) {
-                        if (p != String.class) {
-                            allStrings = false;
-                            break;
+            for (World world : Universe.get().getWorlds().values()) {
+                world.execute(() -> {
+                    for (PlayerRef playerRef : world.getPlayerRefs()) {
+                        Ref<EntityStore> ref = playerRef.getReference();
+                        if (ref != null && ref.isValid()) {
+                            playerJoined(playerRef);
                         }
                     }
-                    if (allStrings) {
-                        best = c;
-                        break;
-                    }
-                }
+                });
             }
-            if (best == null) return null;
-
-            return best.newInstance(newBodyId, underwear, face, ears, mouth, eyes, facialHair, haircut, eyebrows, pants, overpants, undertop, overtop, shoes, headAccessory, faceAccessory, earAccessory, skinFeature, gloves, cape);
-        } catch (Throwable t) {
-            System.out.println("[HBT] rebuildSkinWithBodyCharacteristic failed: " + t);
-            return null;
+        } catch (RuntimeException e) {
+            HBTLog.warn("Could not register players already online: %s", e);
         }
     }
 
-    private boolean applySkinToPlayer(Object player, Object newSkin) {
-        // Try common method names
-        String[] candidates = {"setSkin", "setPlayerSkin", "applySkin", "applyPlayerSkin", "updateSkin", "updatePlayerSkin"};
+    private void playerJoined(@Nonnull PlayerRef playerRef) {
+        bodyTypes.playerStates().playerJoined(playerRef.getUuid());
+        joinApply.enqueue(new ServerPlayerHandle.Joiner(playerRef));
+    }
 
-        for (String name : candidates) {
-            try {
-                Method m = player.getClass().getMethod(name, newSkin.getClass());
-                m.invoke(player, newSkin);
-                return true;
-            } catch (Throwable ignored) {
-            }
+    private void registerGauges() {
+        PlayerStateCache states = bodyTypes.playerStates();
+        SkinCache skinCache = bodyTypes.skinCache();
+        PlayerActionMailbox actions = playerActions.mailbox();
+        metrics.gauge("state.resident", states::residentCount);
+        metrics.gauge("state.remoteUpdates", states::remoteUpdates);
+        metrics.gauge("persist.writes", () -> persister.writes());
+        metrics.gauge("persist.coalesced", () -> persister.coalescedSaves());
+        metrics.gauge("actions.submitted", actions::submittedActions);
+        metrics.gauge("actions.coalesced", actions::coalescedActions);
+        metrics.gauge("skinCache.hits", skinCache::hits);
+        metrics.gauge("skinCache.misses", skinCache::misses);
+        metrics.gauge("joinApply.queued", () -> joinApply.depth());
+        metrics.gauge("joinApply.applied", () -> joinApply.applied());
+        metrics.gauge("joinApply.skipped", () -> joinApply.skipped());
+        metrics.gauge("joinApply.timedOut", () -> joinApply.timedOut());
+        metrics.gauge("joinApply.failed", () -> joinApply.failed());
+        metrics.gauge("joinApply.inFlight", () -> joinApply.inFlight());
+        metrics.gauge("joinApply.dropped", () -> joinApply.dropped());
+        metrics.gauge("log.dropped", HBTLog::droppedLines);
+        if (catalogWatcher != null) {
+            metrics.gauge("catalog.reloads", catalogWatcher::reloads);
         }
+    }
+
+    private void startMetricsDump(Path file, long intervalSec) {
+        if (intervalSec <= 0) return;
 
-        // If Player doesn't expose it, it might live on another object (appearance/cosmetics).
-        // Try getters on Player that return something and have a method accepting PlayerSkin.
-        for (Method getter : player.getClass().getMethods()) {
+        metricsDump = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "HBT-Metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        metricsDump.scheduleWithFixedDelay(() -> {
             try {
-                if (getter.getParameterCount() != 0) continue;
-                String n = getter.getName().toLowerCase();
-                if (!(n.contains("cosmetic") || n.contains("appearance") || n.contains("skin"))) continue;
-
-                Object target = getter.invoke(player);
-                if (target == null) continue;
-
-                for (Method m : target.getClass().getMethods()) {
-                    if (m.getParameterCount() == 1 && m.getParameterTypes()[0] == newSkin.getClass()) {
-                        String mn = m.getName().toLowerCase();
-                        if (mn.contains("set") || mn.contains("apply") || mn.contains("update")) {
-                            m.invoke(target, newSkin);
-                            return true;
-                        }
-                    }
-                }
-            } catch (Throwable ignored) {
+                Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.write(tmp, metrics.report(), StandardCharsets.UTF_8);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                HBTLog.warn("Could not write %s: %s", file, e);
             }
-        }
-
-        return false;
+        }, intervalSec, intervalSec, TimeUnit.SECONDS);
     }
 
-    private Object invokeNoArg(Object target, String method) {
+    @Override
+    protected void shutdown() {
         try {
-            Method m = target.getClass().getMethod(method);
-            return m.invoke(target);
-        } catch (Throwable ignored) {
-            return null;
+            ready.get(10, TimeUnit.SECONDS);
+        } catch (Exception ignored) {
+        }
+        if (metricsDump != null) {
+            metricsDump.shutdownNow();
+        }
+        if (catalogWatcher != null) {
+            catalogWatcher.close();
+        }
+        if (bulkApply != null) {
+            bulkApply.close();
+        }
+        if (joinApply != null) {
+            joinApply.close();
         }
+        if (persister != null) {
+            persister.close();
+        }
+        if (bodyTypes != null) {
+            bodyTypes.playerStates().close();
+        }
+        HBTLog.close();
+        super.shutdown();
     }
 
-    private String stringifyPartId(Object partId) {
-        if (partId == null) return null;
+    /**
+     * Completes once player state is open and the skin API was resolved.
+     */
+    public CompletableFuture<Void> ready() {
+        return ready;
+    }
 
-        try {
-            Method getAssetId = partId.getClass().getMethod("getAssetId");
-            Object asset = getAssetId.invoke(partId);
-            if (asset == null) return null;
-
-            Method getTextureId = partId.getClass().getMethod("getTextureId");
-            Object tex = getTextureId.invoke(partId);
-
-            Method getVariantId = partId.getClass().getMethod("getVariantId");
-            Object var = getVariantId.invoke(partId);
-
-            String s = asset.toString();
-            if (tex != null) s += "." + tex;
-            if (var != null) s += "." + var;
-            return s;
-        } catch (Throwable ignored) {
-            return null;
-        }
+    public boolean isReady() {
+        return ready.isDone() && !ready.isCompletedExceptionally();
     }
 
-    public void debugPlayerCosmetics(Object player) {
-        System.out.println("[HBT] --- Player cosmetic probe ---");
-        for (var m : player.getClass().getMethods()) {
-            String n = m.getName().toLowerCase();
-            if (n.contains("skin") || n.contains("cosmetic") || n.contains("appearance") || n.contains("body")) {
-                System.out.println("[HBT] method: " + m.getName() + " " + java.util.Arrays.toString(m.getParameterTypes()) + " -> " + m.getReturnType());
-            }
-        }
-        for (var f : player.getClass().getDeclaredFields()) {
-            String n = f.getName().toLowerCase();
-            if (n.contains("skin") || n.contains("cosmetic") || n.contains("appearance") || n.contains("body")) {
-                System.out.println("[HBT] field: " + f.getName() + " : " + f.getType());
-            }
-        }
+    /**
+     * What to tell a player while {@link #isReady()} is false: still loading, or startup failed.
+     */
+    Message notReadyMessage() {
+        return ready.isCompletedExceptionally()
+                ? Message.raw(STARTUP_FAILED_MESSAGE).color("#ff6b6b")
+                : Message.raw(LOADING_MESSAGE).color("#cbd5e0");
     }
 
-    // ---------- Persistence (simple JSON) ----------
+    BodyTypeActions playerActions() {
+        return playerActions;
+    }
 
-    private void loadState() {
-        if (dataFile == null) return;
-        if (!Files.exists(dataFile)) return;
+    BulkApplier bulkApply() {
+        return bulkApply;
+    }
 
-        try {
-            String json = Files.readString(dataFile, StandardCharsets.UTF_8).trim();
-            if (json.isEmpty()) return;
+    HBTMetrics metrics() {
+        return metrics;
+    }
 
-            enabledByPlayer.clear();
+    BodyTypeCatalog catalog() {
+        BodyTypeService service = bodyTypes;
+        return (service != null) ? service.catalog() : null;
+    }
 
-            Pattern entry = Pattern.compile("\"([0-9a-fA-F\\-]{36})\"\\s*:\\s*(true|false)");
-            Matcher m = entry.matcher(json);
-            while (m.find()) {
-                UUID uuid = UUID.fromString(m.group(1));
-                boolean enabled = Boolean.parseBoolean(m.group(2));
-                enabledByPlayer.put(uuid, enabled);
-            }
-        } catch (Exception ignored) {
-            enabledByPlayer.clear();
-        }
+    public boolean isEnabled(@Nonnull UUID uuid) {
+        BodyTypeService service = bodyTypes;
+        return service != null && service.isEnabled(uuid);
     }
 
-    private void saveState() {
-        if (dataFile == null) return;
+    /**
+     * Chosen body type, or null when off.
+     */
+    BodyTypeCatalog.Entry bodyType(@Nonnull UUID uuid) {
+        BodyTypeService service = bodyTypes;
+        return (service != null) ? service.bodyType(uuid) : null;
+    }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("{\"players\":{");
+    /**
+     * @throws IllegalStateException while the player's state is not loaded, see {@link PlayerStateCache#prefetch}
+     */
+    public void setEnabled(@Nonnull UUID uuid, boolean enabled) {
+        bodyTypes.setEnabled(uuid, enabled);
+    }
 
-        boolean first = true;
-        for (Map.Entry<UUID, Boolean> e : enabledByPlayer.entrySet()) {
-            if (!first) sb.append(",");
-            first = false;
-            sb.append("\"").append(e.getKey()).append("\":").append(e.getValue());
-        }
+    /**
+     * @throws IllegalStateException while the player's state is not loaded, see {@link PlayerStateCache#prefetch}
+     */
+    public void toggle(@Nonnull UUID uuid) {
+        bodyTypes.toggle(uuid);
+    }
 
-        sb.append("}}");
+    /**
+     * Call this after toggling to apply the appearance swap immediately.
+     *
+     * @return whether the player now has the swap, either applied or already in place; false as well
+     * while their state is still loading
+     */
+    public boolean applyNow(@Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef) {
+        BodyTypeService.ApplyResult result = bodyTypes.apply(new ServerPlayerHandle(store, ref, playerRef));
+        return result == BodyTypeService.ApplyResult.APPLIED || result == BodyTypeService.ApplyResult.UNCHANGED;
+    }
 
-        try {
-            Path tmp = dataFile.resolveSibling(dataFile.getFileName().toString() + ".tmp");
-            Files.writeString(tmp, sb.toString(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    public void applyBodyCharacteristic(@Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef) {
+        HBTLog.debug("applyBodyCharacteristic called for %s bodyType=%s", playerRef.getUsername(), bodyType(playerRef.getUuid()));
+        applyNow(store, ref, playerRef);
+    }
+
+    public void debugPlayerCosmetics(Object player) {
+        if (!HBTLog.isEnabled(HBTLog.Level.DEBUG)) return;
 
-            Files.move(tmp, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-        } catch (IOException ignored) {
+        HBTLog.debug("--- Player cosmetic probe ---");
+        for (var m : player.getClass().getMethods()) {
+            String n = m.getName().toLowerCase();
+            if (n.contains("skin") || n.contains("cosmetic") || n.contains("appearance") || n.contains("body")) {
+                HBTLog.debug("method: %s %s -> %s", m.getName(), java.util.Arrays.toString(m.getParameterTypes()), m.getReturnType());
+            }
         }
+        for (var f : player.getClass().getDeclaredFields()) {
+            String n = f.getName().toLowerCase();
+            if (n.contains("skin") || n.contains("cosmetic") || n.contains("appearance") || n.contains("body")) {
+                HBTLog.debug("field: %s : %s", f.getName(), f.getType());
+            }
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
     }
 }
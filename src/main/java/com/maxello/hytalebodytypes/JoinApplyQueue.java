@@ -0,0 +1,236 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies saved body types to joining players without doing it inline in the connect event.
+ * <p>
+ * Joins go into a bounded queue. Every {@code intervalMs} up to {@code maxPerTick} players whose
+ * state finished loading and who are in a world are handed to their world thread in one batch per
+ * world; the rest go back to the end of the queue until {@code maxWaitMs} runs out. A restart's
+ * reconnect wave is therefore applied over a few ticks instead of stalling them.
+ * <p>
+ * Each world has at most one batch in flight. Players in a world whose batch hasn't run yet wait in
+ * the queue, while players in other worlds keep going.
+ */
+final class JoinApplyQueue {
+
+    /**
+     * A joining player: the server's PlayerRef, or a stand-in.
+     */
+    interface Joiner {
+
+        @Nonnull
+        UUID uuid();
+
+        String username();
+
+        /**
+         * World the player is in, or null while they are not in one yet. Called on the ticker thread.
+         */
+        WorldHandle world();
+
+        /**
+         * The player's entity, or null if they left. Called on the world thread.
+         */
+        PlayerHandle handle();
+    }
+
+    private final BodyTypeService service;
+    private final PlayerStateCache states;
+    private final HBTMetrics metrics;
+    private final int maxPerTick;
+    private final long maxWaitNanos;
+
+    private final ArrayBlockingQueue<Joined> queue;
+    // Worlds with a batch posted and not finished yet
+    private final Set<WorldHandle> inFlight = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService ticker;
+
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    JoinApplyQueue(@Nonnull BodyTypeService service, @Nonnull HBTMetrics metrics, int capacity, int maxPerTick, long intervalMs, long maxWaitMs) {
+        this.service = service;
+        this.states = service.playerStates();
+        this.metrics = metrics;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.maxPerTick = Math.max(1, maxPerTick);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, maxWaitMs));
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "HBT-JoinApply");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, intervalMs, Math.max(1, intervalMs), TimeUnit.MILLISECONDS);
+    }
+
+    static JoinApplyQueue fromConfig(@Nonnull BodyTypeService service, @Nonnull HBTMetrics metrics, @Nonnull HBTConfig config) {
+        return new JoinApplyQueue(service, metrics, config.getInt("joinApply.queueSize", 1024), config.getInt("joinApply.maxPerTick", 20), config.getLong("joinApply.intervalMs", 50), config.getLong("joinApply.maxWaitMs", 30000));
+    }
+
+    /**
+     * Queues a joining player; their state should already be prefetching.
+     */
+    void enqueue(@Nonnull Joiner joiner) {
+        if (!queue.offer(new Joined(joiner, System.nanoTime()))) {
+            dropped.increment();
+            HBTLog.warn("Join apply queue full, %s keeps their current skin until the next apply", joiner.username());
+        }
+    }
+
+    void close() {
+        ticker.shutdownNow();
+        queue.clear();
+    }
+
+    int depth() {
+        return queue.size();
+    }
+
+    long applied() {
+        return applied.sum();
+    }
+
+    /**
+     * Players that were off with nothing to restore, already matching, or gone before their turn.
+     */
+    long skipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * Players still not in a world, or whose state was still loading, after {@code maxWaitMs}.
+     */
+    long timedOut() {
+        return timedOut.sum();
+    }
+
+    /**
+     * Players whose apply failed (see the apply failure metrics for why), or whose world refused
+     * their batch.
+     */
+    long failed() {
+        return failed.sum();
+    }
+
+    /**
+     * Worlds with a batch posted and not finished yet.
+     */
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    // Ticker thread only; an exception escaping here would cancel the schedule
+    private void tick() {
+        try {
+            dispatch();
+        } catch (RuntimeException e) {
+            HBTLog.warn("Join apply tick failed: %s", e);
+        }
+    }
+
+    private void dispatch() {
+        if (queue.isEmpty()) return;
+
+        Map<WorldHandle, List<Joined>> batches = new LinkedHashMap<>();
+        List<Joined> notYet = new ArrayList<>();
+        long now = System.nanoTime();
+
+        int taken = 0;
+        for (int n = queue.size(); n > 0 && taken < maxPerTick; n--) {
+            Joined j = queue.poll();
+            if (j == null) break;
+
+            UUID uuid = j.joiner.uuid();
+            if (!states.isOnline(uuid)) {
+                skipped.increment();
+                continue;
+            }
+            WorldHandle world = j.joiner.world();
+            if (world == null || !states.isResident(uuid)) {
+                if (now - j.enqueuedNanos < maxWaitNanos) {
+                    notYet.add(j);
+                } else {
+                    timedOut.increment();
+                    HBTLog.debug("%s was not ready to apply within joinApply.maxWaitMs", j.joiner.username());
+                }
+                continue;
+            }
+            // that world's previous batch hasn't run yet; no timeout, it is this queue that is behind
+            if (inFlight.contains(world)) {
+                notYet.add(j);
+                continue;
+            }
+            batches.computeIfAbsent(world, w -> new ArrayList<>()).add(j);
+            taken++;
+        }
+        for (Joined j : notYet) {
+            if (!queue.offer(j)) dropped.increment();
+        }
+
+        for (Map.Entry<WorldHandle, List<Joined>> e : batches.entrySet()) {
+            WorldHandle world = e.getKey();
+            List<Joined> batch = e.getValue();
+            inFlight.add(world);
+            try {
+                world.execute(() -> apply(world, batch));
+            } catch (RuntimeException ex) {
+                // world shutting down or gone; nothing runs the batch, so nothing else would release it
+                inFlight.remove(world);
+                failed.add(batch.size());
+                HBTLog.debug("Could not post join apply batch of %d to a world: %s", batch.size(), ex);
+            }
+        }
+    }
+
+    // World thread
+    private void apply(WorldHandle world, List<Joined> batch) {
+        try {
+            for (Joined j : batch) {
+                metrics.joinWait.recordSince(j.enqueuedNanos);
+                try {
+                    PlayerHandle handle = j.joiner.handle();
+                    if (handle == null || service.isUpToDate(handle)) {
+                        skipped.increment();
+                        continue;
+                    }
+                    switch (service.apply(handle)) {
+                        case APPLIED, UNCHANGED -> applied.increment();
+                        // applied again once what it waits on is read
+                        case NOT_LOADED -> skipped.increment();
+                        case FAILED -> failed.increment();
+                    }
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    HBTLog.warn("Join apply failed for %s: %s", j.joiner.username(), e);
+                }
+            }
+        } finally {
+            inFlight.remove(world);
+        }
+    }
+
+    private record Joined(Joiner joiner, long enqueuedNanos) {
+    }
+}
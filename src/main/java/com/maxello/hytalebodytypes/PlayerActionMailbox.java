@@ -0,0 +1,141 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Serializes Enable/Disable/Toggle/Select/Cycle/Apply per player.
+ * <p>
+ * Actions are queued per player and run on the world thread once the player's state is resident
+ * (normally it already is, from the join prefetch); nothing waits for the load meanwhile. The
+ * queued state changes are applied in submission order, then the skin apply and the caller's UI
+ * update run once. Actions arriving before that are folded in, so spam-clicking ends in a single
+ * apply with the final state.
+ */
+final class PlayerActionMailbox {
+
+    enum Action {
+        ENABLE, DISABLE, TOGGLE, SELECT, CYCLE, APPLY
+    }
+
+    private final BodyTypeService service;
+    private final ConcurrentHashMap<UUID, Pending> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+
+    PlayerActionMailbox(@Nonnull BodyTypeService service) {
+        this.service = service;
+    }
+
+    /**
+     * @param onApplied runs on the world thread after the apply with the final enabled state;
+     *                  only the latest callback of a coalesced batch runs
+     */
+    void submit(@Nonnull PlayerHandle player, @Nonnull Action action, @Nonnull Consumer<Boolean> onApplied) {
+        submit(player, action, BodyTypeCatalog.NONE, onApplied);
+    }
+
+    /**
+     * @param choice the body type for {@link Action#SELECT}, ignored otherwise
+     */
+    void submit(@Nonnull PlayerHandle player, @Nonnull Action action, byte choice, @Nonnull Consumer<Boolean> onApplied) {
+        UUID uuid = player.uuid();
+        submitted.increment();
+
+        Step step = new Step(action, choice);
+        boolean[] schedule = {false};
+        pending.compute(uuid, (id, queued) -> {
+            if (queued == null) {
+                schedule[0] = true;
+                queued = new Pending();
+            } else {
+                coalesced.increment();
+            }
+            queued.steps.add(step);
+            queued.player = player;
+            queued.onApplied = onApplied;
+            return queued;
+        });
+
+        if (schedule[0]) {
+            service.playerStates().prefetch(uuid).whenComplete((loaded, failure) -> {
+                try {
+                    player.execute(() -> drain(uuid));
+                } catch (RuntimeException e) {
+                    // world gone; drop the batch so the next action schedules afresh
+                    pending.remove(uuid);
+                    HBTLog.warn("Dropped body type actions for %s: %s", player.username(), e);
+                }
+            });
+        }
+    }
+
+    // World thread
+    private void drain(UUID uuid) {
+        Pending p = pending.remove(uuid);
+        if (p == null) return;
+
+        if (!service.playerStates().isResident(uuid)) {
+            // the load failed and was logged; a later action tries it again
+            p.player.sendMessage("Could not load your body type settings, try again later.", "#ff6b6b");
+            return;
+        }
+        for (Step step : p.steps) {
+            switch (step.action) {
+                case ENABLE -> service.setEnabled(uuid, true);
+                case DISABLE -> service.setEnabled(uuid, false);
+                case TOGGLE -> service.toggle(uuid);
+                case SELECT -> service.select(uuid, step.choice);
+                case CYCLE -> service.cycle(uuid);
+                case APPLY -> {
+                    // state unchanged, just re-apply
+                }
+            }
+        }
+        if (!p.player.isValid()) return;
+
+        HBTLog.debug("Applying bodyType=%s for %s", service.bodyType(uuid), p.player.username());
+        service.apply(p.player);
+        applied.increment();
+        p.onApplied.accept(service.isEnabled(uuid));
+    }
+
+    long submittedActions() {
+        return submitted.sum();
+    }
+
+    /**
+     * Actions that were folded into another one's apply.
+     */
+    long coalescedActions() {
+        return coalesced.sum();
+    }
+
+    long applies() {
+        return applied.sum();
+    }
+
+    /**
+     * True when no apply is queued, e.g. to wait for a burst of actions to settle.
+     */
+    boolean isIdle() {
+        return pending.isEmpty();
+    }
+
+    private record Step(Action action, byte choice) {
+    }
+
+    // Changed only inside pending.compute, read after pending.remove
+    private static final class Pending {
+        final List<Step> steps = new ArrayList<>(2);
+        PlayerHandle player;
+        Consumer<Boolean> onApplied;
+    }
+}
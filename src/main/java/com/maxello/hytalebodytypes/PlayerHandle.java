@@ -0,0 +1,33 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.util.UUID;
+
+/**
+ * What the action and apply paths need of an online player: the server's PlayerRef, Ref, Store and
+ * World behind one seam, so the same paths run headless against stand-ins.
+ */
+interface PlayerHandle {
+
+    @Nonnull
+    UUID uuid();
+
+    String username();
+
+    /**
+     * False once the player's entity is gone, e.g. they left.
+     */
+    boolean isValid();
+
+    /**
+     * The entity's Player component, or null if it has none.
+     */
+    Object player();
+
+    /**
+     * Runs {@code task} on the thread that owns the player's entity.
+     */
+    void execute(@Nonnull Runnable task);
+
+    void sendMessage(@Nonnull String text, @Nonnull String color);
+}
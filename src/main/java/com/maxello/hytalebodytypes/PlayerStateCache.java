@@ -0,0 +1,393 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntUnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resident state for the players currently around, backed by a {@link StateBackend}.
+ * <p>
+ * A player's entry is read from its shard in the background the first time they show up (join or
+ * first lookup). Entries of players who left are dropped when they leave, or once their changes
+ * are written if they have unsaved ones, so memory follows the online count instead of the
+ * all-time count whether or not anyone changes anything. With a shared backend, resident
+ * entries are also updated every {@code state.syncIntervalMs} with what other nodes wrote, unless
+ * this node has a change of its own not written yet.
+ * <p>
+ * Only resident entries can be changed: callers wait for {@link #prefetch} instead of blocking on it.
+ * Changes and eviction of an entry run inside {@code loads.compute} for that player, so an eviction
+ * can never drop a change made concurrently.
+ */
+final class PlayerStateCache {
+
+    private final Path dataDir;
+    private final StateBackend storage;
+    private final int maxResident;
+    private final long syncIntervalMs;
+    private final HBTMetrics metrics;
+
+    private final PlayerStateStore states = new StripedStateStore();
+    // Players whose entry is resident (or being loaded)
+    private final ConcurrentHashMap<UUID, CompletableFuture<Void>> loads = new ConcurrentHashMap<>();
+    private final Set<UUID> online = ConcurrentHashMap.newKeySet();
+    // Players changed since the last flush
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    // Players the running flush is writing
+    private final Set<UUID> writing = ConcurrentHashMap.newKeySet();
+    // Keeps poll() out of a running append: a remote change it read for a player whose shard was
+    // already written, while other shards still were, would be dropped as if ours landed after it
+    private final Object syncLock = new Object();
+    // Players who left, dropped once their changes are written
+    private final Set<UUID> leaving = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService loader;
+    private ScheduledExecutorService sync;
+    private final LongAdder remoteUpdates = new LongAdder();
+    private Runnable onChange = () -> {
+    };
+
+    PlayerStateCache(@Nonnull Path dataDir, @Nonnull HBTConfig config, @Nonnull HBTMetrics metrics) {
+        this.dataDir = dataDir;
+        this.metrics = metrics;
+        this.storage = StateBackend.fromConfig(dataDir, config);
+        this.maxResident = config.getInt("state.maxResident", 5000);
+        this.syncIntervalMs = config.getLong("state.syncIntervalMs", 500);
+
+        AtomicInteger n = new AtomicInteger();
+        this.loader = Executors.newFixedThreadPool(Math.max(1, config.getInt("state.loaderThreads", 2)), r -> {
+            Thread t = new Thread(r, "HBT-StateLoader-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Called after every change, e.g. to schedule a flush.
+     */
+    void onChange(@Nonnull Runnable onChange) {
+        this.onChange = onChange;
+    }
+
+    void open() throws IOException {
+        storage.init();
+        if (storage.isEmpty()) {
+            importLegacy();
+        }
+
+        if (storage.isShared()) {
+            storage.onRemoteChange(this::remoteChange, this::remoteShard);
+            sync = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "HBT-StateSync");
+                t.setDaemon(true);
+                return t;
+            });
+            sync.scheduleWithFixedDelay(this::poll, syncIntervalMs, Math.max(1, syncIntervalMs), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void close() {
+        if (sync != null) {
+            sync.shutdownNow();
+        }
+        loader.shutdownNow();
+    }
+
+    /**
+     * Current state, or {@link PlayerStateStore#NONE} while the entry is not resident (the load is
+     * started then). Fine for display; anything acting on the state checks {@link #isResident} first.
+     */
+    short get(@Nonnull UUID uuid) {
+        if (!loads.containsKey(uuid)) {
+            prefetch(uuid);
+        }
+        return states.get(uuid);
+    }
+
+    /**
+     * @throws IllegalStateException if the entry is not resident
+     */
+    void set(@Nonnull UUID uuid, short state) {
+        update(uuid, current -> state);
+    }
+
+    /**
+     * @return the new state
+     * @throws IllegalStateException if the entry is not resident
+     */
+    short update(@Nonnull UUID uuid, @Nonnull IntUnaryOperator fn) {
+        short[] next = new short[1];
+        boolean[] resident = {false};
+        loads.computeIfPresent(uuid, (id, load) -> {
+            if (isLoaded(load)) {
+                // Marked before the write too, so a concurrent flush can't miss or evict it
+                dirty.add(id);
+                next[0] = states.update(id, fn);
+                resident[0] = true;
+            }
+            return load;
+        });
+        if (!resident[0]) throw new IllegalStateException("State of " + uuid + " is not loaded");
+
+        onChange.run();
+        return next[0];
+    }
+
+    /**
+     * Starts loading the player's entry unless it is resident or loading.
+     *
+     * @return completes once the entry is resident, or exceptionally if it could not be read (a
+     * later call tries again)
+     */
+    CompletableFuture<Void> prefetch(@Nonnull UUID uuid) {
+        CompletableFuture<Void> existing = loads.get(uuid);
+        if (existing != null) return existing;
+
+        CompletableFuture<Void> load = new CompletableFuture<>();
+        existing = loads.putIfAbsent(uuid, load);
+        if (existing != null) return existing;
+
+        try {
+            loader.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    states.put(uuid, storage.read(uuid));
+                    metrics.stateLoad.recordSince(start);
+                    load.complete(null);
+                    // left while loading, or a lookup past the bound
+                    if (leaving.contains(uuid) || loads.size() > maxResident) {
+                        trim();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // The files are left as they are; new changes only go to the journal
+                    HBTLog.error("Could not load state for %s: %s", uuid, e);
+                    failed(uuid, load, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed
+            failed(uuid, load, e);
+        }
+        return load;
+    }
+
+    private void failed(UUID uuid, CompletableFuture<Void> load, Exception cause) {
+        loads.remove(uuid, load);
+        load.completeExceptionally(cause);
+    }
+
+    /**
+     * Runs blocking work that belongs with the state files (body id table reads and writes) on the
+     * loader threads, off the caller's world thread. Dropped once closed.
+     */
+    void runOnLoader(@Nonnull Runnable task) {
+        try {
+            loader.execute(task);
+        } catch (RejectedExecutionException e) {
+            HBTLog.debug("Player state closed, dropped a background task");
+        }
+    }
+
+    void playerJoined(@Nonnull UUID uuid) {
+        online.add(uuid);
+        leaving.remove(uuid);
+        prefetch(uuid);
+    }
+
+    void playerLeft(@Nonnull UUID uuid) {
+        online.remove(uuid);
+        leaving.add(uuid);
+        trim();
+    }
+
+    /**
+     * True once the player's entry finished loading.
+     */
+    boolean isResident(@Nonnull UUID uuid) {
+        return isLoaded(loads.get(uuid));
+    }
+
+    private static boolean isLoaded(CompletableFuture<Void> load) {
+        return load != null && load.isDone() && !load.isCompletedExceptionally();
+    }
+
+    boolean isOnline(@Nonnull UUID uuid) {
+        return online.contains(uuid);
+    }
+
+    int residentCount() {
+        return loads.size();
+    }
+
+    /**
+     * Resident entries changed because another node wrote them.
+     */
+    long remoteUpdates() {
+        return remoteUpdates.sum();
+    }
+
+    /**
+     * Appends every changed player to its shard, then drops players who left (or overflow the bound)
+     * and have nothing left to write.
+     */
+    void flush() {
+        List<UUID> changed = new ArrayList<>();
+        for (Iterator<UUID> it = dirty.iterator(); it.hasNext(); ) {
+            UUID uuid = it.next();
+            writing.add(uuid);
+            changed.add(uuid);
+            it.remove();
+        }
+
+        synchronized (syncLock) {
+            try {
+                storage.append(changed, states);
+            } catch (IOException e) {
+                // keep them dirty for the next flush
+                dirty.addAll(changed);
+                throw new UncheckedIOException(e);
+            } finally {
+                changed.forEach(writing::remove);
+            }
+        }
+
+        trim();
+    }
+
+    // Players who left stay listed until they are gone (or back); unsaved ones wait for their flush
+    private void trim() {
+        for (Iterator<UUID> it = leaving.iterator(); it.hasNext(); ) {
+            UUID uuid = it.next();
+            if (evict(uuid)) {
+                it.remove();
+            }
+        }
+
+        if (loads.size() > maxResident) {
+            for (UUID uuid : loads.keySet()) {
+                if (loads.size() <= maxResident) break;
+                evict(uuid);
+            }
+        }
+    }
+
+    /**
+     * @return false if the entry has to stay for now: unsaved, being written or still loading
+     */
+    private boolean evict(UUID uuid) {
+        boolean[] kept = {false};
+        // Same guard as update(): a change either lands first and marks the entry dirty, or finds it gone
+        loads.computeIfPresent(uuid, (id, load) -> {
+            if (online.contains(id)) return load;
+            if (dirty.contains(id) || writing.contains(id) || !load.isDone()) {
+                kept[0] = true;
+                return load;
+            }
+
+            states.put(id, PlayerStateStore.NONE);
+            return null;
+        });
+        return !kept[0];
+    }
+
+    // Sync thread, or a flushing thread during append
+    private void remoteChange(long msb, long lsb, short state) {
+        UUID uuid = new UUID(msb, lsb);
+        boolean[] changed = {false};
+        // Under the entry's guard, so it can't be evicted or changed locally meanwhile
+        loads.computeIfPresent(uuid, (id, load) -> {
+            // A local change not written yet wins; it lands after this one in the shared journal
+            if (isLoaded(load) && !dirty.contains(id) && !writing.contains(id)) {
+                changed[0] = states.put(id, state) != state;
+            }
+            return load;
+        });
+        if (changed[0]) remoteUpdates.increment();
+    }
+
+    // Another node compacted the shard: resident players missing from it were turned off there
+    private void remoteShard(int shard, PlayerStateStore state) {
+        for (UUID uuid : loads.keySet()) {
+            if (ShardedStateStorage.index(uuid) == shard) {
+                remoteChange(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), state.get(uuid));
+            }
+        }
+    }
+
+    private void poll() {
+        try {
+            synchronized (syncLock) {
+                storage.poll();
+            }
+        } catch (IOException | RuntimeException e) {
+            HBTLog.warn("Could not sync player state: %s", e);
+        }
+    }
+
+    /**
+     * One-time import of player_state.json or the single-file journal into shards; a shared backend
+     * also takes this node's local shards, which are left in place.
+     */
+    private void importLegacy() throws IOException {
+        PlayerStateStore legacy = new StripedStateStore();
+        List<Path> imported = new ArrayList<>();
+
+        Path snapshot = dataDir.resolve("player_state.snapshot");
+        Path journal = dataDir.resolve("player_state.journal");
+        Path json = dataDir.resolve("player_state.json");
+
+        ShardedStateStorage local = new ShardedStateStorage(dataDir.resolve("shards"), Long.MAX_VALUE);
+        StateJournal single = new StateJournal(snapshot, journal, Long.MAX_VALUE);
+        if (storage.isShared() && !local.isEmpty()) {
+            local.loadAll(legacy);
+        } else if (single.exists()) {
+            single.load(legacy);
+            imported.add(snapshot);
+            imported.add(journal);
+        } else if (Files.exists(json)) {
+            readLegacyJson(json, legacy);
+            imported.add(json);
+        } else {
+            return;
+        }
+
+        storage.importAll(legacy);
+        for (Path p : imported) {
+            if (Files.exists(p)) {
+                Files.move(p, p.resolveSibling(p.getFileName().toString() + ".imported"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        HBTLog.info("Imported %d entries into %s player state", legacy.size(), storage.isShared() ? "shared" : "local");
+    }
+
+    private static void readLegacyJson(Path json, PlayerStateStore into) throws IOException {
+        String text = Files.readString(json, StandardCharsets.UTF_8).trim();
+
+        Pattern entry = Pattern.compile("\"([0-9a-fA-F\\-]{36})\"\\s*:\\s*(true|false)");
+        Matcher m = entry.matcher(text);
+        while (m.find()) {
+            UUID uuid = UUID.fromString(m.group(1));
+            into.put(uuid, Boolean.parseBoolean(m.group(2)) ? BodyTypeCatalog.STATE_ON : PlayerStateStore.NONE);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.util.UUID;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Per-player state value keyed on the two halves of the player's UUID.
+ * <p>
+ * {@link #NONE} is never stored: writing it removes the player, and reading an unknown player returns it.
+ */
+interface PlayerStateStore {
+
+    short NONE = 0;
+
+    short get(long msb, long lsb);
+
+    /**
+     * @return the previous state
+     */
+    short put(long msb, long lsb, short state);
+
+    /**
+     * Atomically replaces the state with {@code fn(state)}.
+     *
+     * @return the new state
+     */
+    short update(long msb, long lsb, @Nonnull IntUnaryOperator fn);
+
+    int size();
+
+    void clear();
+
+    void forEach(@Nonnull Visitor visitor);
+
+    default short get(@Nonnull UUID uuid) {
+        return get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    default short put(@Nonnull UUID uuid, short state) {
+        return put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), state);
+    }
+
+    default short update(@Nonnull UUID uuid, @Nonnull IntUnaryOperator fn) {
+        return update(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), fn);
+    }
+
+    @FunctionalInterface
+    interface Visitor {
+        void accept(long msb, long lsb, short state);
+    }
+}
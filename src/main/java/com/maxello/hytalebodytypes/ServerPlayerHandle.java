@@ -0,0 +1,83 @@
+package com.maxello.hytalebodytypes;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+
+import javax.annotation.Nonnull;
+import java.util.UUID;
+
+/**
+ * {@link PlayerHandle} over a live player's entity.
+ */
+record ServerPlayerHandle(@Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef) implements PlayerHandle {
+
+    /**
+     * Handle for the player's current entity, or null if they have none (left, or not spawned yet).
+     */
+    static ServerPlayerHandle of(@Nonnull PlayerRef playerRef) {
+        Ref<EntityStore> ref = playerRef.getReference();
+        return (ref != null && ref.isValid()) ? new ServerPlayerHandle(ref.getStore(), ref, playerRef) : null;
+    }
+
+    @Nonnull
+    @Override
+    public UUID uuid() {
+        return playerRef.getUuid();
+    }
+
+    @Override
+    public String username() {
+        return playerRef.getUsername();
+    }
+
+    @Override
+    public boolean isValid() {
+        return ref.isValid();
+    }
+
+    @Override
+    public Object player() {
+        return store.getComponent(ref, Player.getComponentType());
+    }
+
+    @Override
+    public void execute(@Nonnull Runnable task) {
+        store.getExternalData().getWorld().execute(task);
+    }
+
+    @Override
+    public void sendMessage(@Nonnull String text, @Nonnull String color) {
+        playerRef.sendMessage(Message.raw(text).color(color));
+    }
+
+    /**
+     * A joining player as {@link JoinApplyQueue} sees them.
+     */
+    record Joiner(@Nonnull PlayerRef playerRef) implements JoinApplyQueue.Joiner {
+
+        @Nonnull
+        @Override
+        public UUID uuid() {
+            return playerRef.getUuid();
+        }
+
+        @Override
+        public String username() {
+            return playerRef.getUsername();
+        }
+
+        @Override
+        public WorldHandle world() {
+            return ServerWorldHandle.of(playerRef);
+        }
+
+        @Override
+        public PlayerHandle handle() {
+            return ServerPlayerHandle.of(playerRef);
+        }
+    }
+}
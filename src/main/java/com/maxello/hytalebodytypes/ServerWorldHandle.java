@@ -0,0 +1,57 @@
+package com.maxello.hytalebodytypes;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * {@link WorldHandle} over a server world; equal for the same world, so it can key batches.
+ */
+record ServerWorldHandle(@Nonnull World world) implements WorldHandle {
+
+    /**
+     * World the player is in, or null while they have no entity or world yet.
+     */
+    static ServerWorldHandle of(@Nonnull PlayerRef playerRef) {
+        Ref<EntityStore> ref = playerRef.getReference();
+        if (ref == null || !ref.isValid()) return null;
+
+        UUID worldUuid = playerRef.getWorldUuid();
+        World world = (worldUuid != null) ? Universe.get().getWorld(worldUuid) : null;
+        return (world != null) ? new ServerWorldHandle(world) : null;
+    }
+
+    /**
+     * Every loaded world.
+     */
+    static List<ServerWorldHandle> all() {
+        List<ServerWorldHandle> worlds = new ArrayList<>();
+        for (World world : Universe.get().getWorlds().values()) {
+            worlds.add(new ServerWorldHandle(world));
+        }
+        return worlds;
+    }
+
+    @Override
+    public void execute(@Nonnull Runnable task) {
+        world.execute(task);
+    }
+
+    @Nonnull
+    @Override
+    public List<PlayerHandle> players() {
+        List<PlayerHandle> players = new ArrayList<>();
+        for (PlayerRef playerRef : world.getPlayerRefs()) {
+            ServerPlayerHandle handle = ServerPlayerHandle.of(playerRef);
+            if (handle != null) players.add(handle);
+        }
+        return players;
+    }
+}
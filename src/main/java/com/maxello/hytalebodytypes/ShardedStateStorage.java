@@ -0,0 +1,140 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Player state on disk, split into 256 journals by the first byte of the UUID.
+ * <p>
+ * Loading one player only reads that player's shard, and compaction only rewrites the shards that
+ * grew, so neither scales with the total number of players ever seen.
+ */
+final class ShardedStateStorage implements StateBackend {
+
+    static final int SHARDS = 256;
+
+    private final Path dir;
+    private final StateJournal[] shards = new StateJournal[SHARDS];
+
+    ShardedStateStorage(@Nonnull Path dir, long compactAfterBytes) {
+        this.dir = dir;
+        for (int i = 0; i < SHARDS; i++) {
+            String name = shardName(i);
+            shards[i] = new StateJournal(dir.resolve(name + ".snapshot"), dir.resolve(name + ".journal"), compactAfterBytes);
+        }
+    }
+
+    @Override
+    public void init() throws IOException {
+        Files.createDirectories(dir);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (StateJournal shard : shards) {
+            if (shard.exists()) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public short read(@Nonnull UUID uuid) throws IOException {
+        StateJournal shard = shard(uuid);
+        synchronized (shard) {
+            return shard.find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        }
+    }
+
+    /**
+     * Appends the current state of {@code players}, compacting every shard that got too large.
+     */
+    @Override
+    public void append(@Nonnull Collection<UUID> players, @Nonnull PlayerStateStore state) throws IOException {
+        List<List<UUID>> byShard = new ArrayList<>(SHARDS);
+        for (int i = 0; i < SHARDS; i++) {
+            byShard.add(null);
+        }
+        for (UUID uuid : players) {
+            int i = index(uuid);
+            if (byShard.get(i) == null) byShard.set(i, new ArrayList<>());
+            byShard.get(i).add(uuid);
+        }
+
+        for (int i = 0; i < SHARDS; i++) {
+            List<UUID> changed = byShard.get(i);
+            if (changed == null) continue;
+
+            StateJournal shard = shards[i];
+            synchronized (shard) {
+                shard.append(changed, state);
+                if (shard.needsCompaction()) {
+                    compact(i, shard);
+                }
+            }
+        }
+    }
+
+    /**
+     * Failing is not fatal: the records are in the journal already, and the next append retries.
+     */
+    static void compact(int index, @Nonnull StateJournal shard) {
+        try {
+            shard.compact();
+        } catch (IOException e) {
+            HBTLog.error("Could not compact state shard %s: %s", shardName(index), e);
+        }
+    }
+
+    /**
+     * Replaces every shard with the entries of {@code all}. Only called while the storage is empty.
+     */
+    @Override
+    public void importAll(@Nonnull PlayerStateStore all) throws IOException {
+        PlayerStateStore[] split = new PlayerStateStore[SHARDS];
+        all.forEach((msb, lsb, state) -> {
+            int i = index(msb);
+            if (split[i] == null) split[i] = new StripedStateStore();
+            split[i].put(msb, lsb, state);
+        });
+
+        for (int i = 0; i < SHARDS; i++) {
+            if (split[i] == null) continue;
+            synchronized (shards[i]) {
+                shards[i].compact(split[i]);
+            }
+        }
+    }
+
+    /**
+     * Replays every shard into {@code into}.
+     */
+    void loadAll(@Nonnull PlayerStateStore into) throws IOException {
+        for (StateJournal shard : shards) {
+            synchronized (shard) {
+                shard.load(into);
+            }
+        }
+    }
+
+    private StateJournal shard(UUID uuid) {
+        return shards[index(uuid)];
+    }
+
+    static String shardName(int index) {
+        return String.format("%02x", index);
+    }
+
+    static int index(UUID uuid) {
+        return index(uuid.getMostSignificantBits());
+    }
+
+    static int index(long msb) {
+        return (int) (msb >>> 56);
+    }
+}
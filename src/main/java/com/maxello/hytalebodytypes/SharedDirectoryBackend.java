@@ -0,0 +1,185 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Player state in a directory every node of a server network uses, e.g. on a network share.
+ * <p>
+ * Same shard layout as {@link ShardedStateStorage}, but every shard access holds that shard's file
+ * lock, so nodes can append to and compact the same journals. Each node remembers the journal
+ * position up to which it has seen a shard: {@link #poll()} and every append first read what other
+ * nodes appended after it, and a snapshot replaced by another node's compaction replays the whole
+ * shard. Local writes always land after the remote changes they were checked against, so all nodes
+ * agree on the last write.
+ */
+final class SharedDirectoryBackend implements StateBackend {
+
+    private final Path dir;
+    private final Shard[] shards = new Shard[ShardedStateStorage.SHARDS];
+
+    private volatile PlayerStateStore.Visitor listener = (msb, lsb, state) -> {
+    };
+    private volatile ShardListener replacedListener = (shard, state) -> {
+    };
+
+    SharedDirectoryBackend(@Nonnull Path dir, long compactAfterBytes) {
+        this.dir = dir;
+        for (int i = 0; i < shards.length; i++) {
+            String name = ShardedStateStorage.shardName(i);
+            shards[i] = new Shard(i, new StateJournal(dir.resolve(name + ".snapshot"), dir.resolve(name + ".journal"), compactAfterBytes), dir.resolve(name + ".lock"));
+        }
+    }
+
+    @Override
+    public void init() throws IOException {
+        Files.createDirectories(dir);
+        // Nothing is resident yet, so what is already there needs no replay
+        for (Shard shard : shards) {
+            FileLocks.withLock(shard.lockFile, () -> {
+                shard.position = shard.journal.tail(shard.journal.journalSize(), (msb, lsb, state) -> {
+                });
+                shard.generation = shard.journal.snapshotGeneration();
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Shard shard : shards) {
+            if (shard.journal.exists()) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public short read(@Nonnull UUID uuid) throws IOException {
+        Shard shard = shards[ShardedStateStorage.index(uuid)];
+        return FileLocks.withLock(shard.lockFile, () -> shard.journal.find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+    }
+
+    @Override
+    public void append(@Nonnull Collection<UUID> players, @Nonnull PlayerStateStore state) throws IOException {
+        List<List<UUID>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(null);
+        }
+        for (UUID uuid : players) {
+            int i = ShardedStateStorage.index(uuid);
+            if (byShard.get(i) == null) byShard.set(i, new ArrayList<>());
+            byShard.get(i).add(uuid);
+        }
+
+        for (int i = 0; i < shards.length; i++) {
+            List<UUID> changed = byShard.get(i);
+            if (changed == null) continue;
+
+            Shard shard = shards[i];
+            int index = i;
+            FileLocks.withLock(shard.lockFile, () -> {
+                catchUp(shard);
+                shard.journal.append(changed, state);
+                if (shard.journal.needsCompaction()) {
+                    ShardedStateStorage.compact(index, shard.journal);
+                }
+                shard.position = shard.journal.journalSize();
+                shard.generation = shard.journal.snapshotGeneration();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Merges {@code all} into the shared shards; entries another node already stored win.
+     */
+    @Override
+    public void importAll(@Nonnull PlayerStateStore all) throws IOException {
+        PlayerStateStore[] split = new PlayerStateStore[shards.length];
+        all.forEach((msb, lsb, state) -> {
+            int i = ShardedStateStorage.index(msb);
+            if (split[i] == null) split[i] = new StripedStateStore();
+            split[i].put(msb, lsb, state);
+        });
+
+        for (int i = 0; i < shards.length; i++) {
+            if (split[i] == null) continue;
+
+            Shard shard = shards[i];
+            PlayerStateStore imported = split[i];
+            FileLocks.withLock(shard.lockFile, () -> {
+                PlayerStateStore merged = new StripedStateStore();
+                shard.journal.load(merged);
+                imported.forEach((msb, lsb, state) -> {
+                    if (merged.get(msb, lsb) == PlayerStateStore.NONE) merged.put(msb, lsb, state);
+                });
+                shard.journal.compact(merged);
+                shard.position = shard.journal.journalSize();
+                shard.generation = shard.journal.snapshotGeneration();
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public void onRemoteChange(@Nonnull PlayerStateStore.Visitor changed, @Nonnull ShardListener replaced) {
+        this.listener = changed;
+        this.replacedListener = replaced;
+    }
+
+    @Override
+    public void poll() throws IOException {
+        for (Shard shard : shards) {
+            // Two stats per shard when nothing changed, the lock only when something did
+            if (shard.journal.journalSize() == shard.position && Objects.equals(shard.journal.snapshotGeneration(), shard.generation)) continue;
+
+            FileLocks.withLock(shard.lockFile, () -> {
+                catchUp(shard);
+                return null;
+            });
+        }
+    }
+
+    // Holding the shard's lock
+    private void catchUp(Shard shard) throws IOException {
+        Object generation = shard.journal.snapshotGeneration();
+        long size = shard.journal.journalSize();
+        if (!Objects.equals(generation, shard.generation) || size < shard.position) {
+            // compacted elsewhere: the records since our position are folded into the snapshot, and
+            // players turned off there are simply absent from it
+            PlayerStateStore state = new StripedStateStore();
+            shard.position = shard.journal.replay(state::put);
+            replacedListener.replaced(shard.index, state);
+        } else if (size > shard.position) {
+            shard.position = shard.journal.tail(shard.position, listener);
+        }
+        shard.generation = generation;
+    }
+
+    private static final class Shard {
+        final int index;
+        final StateJournal journal;
+        final Path lockFile;
+        // Journal position and snapshot seen last; written under the lock, peeked at by poll()
+        volatile long position;
+        volatile Object generation;
+
+        Shard(int index, StateJournal journal, Path lockFile) {
+            this.index = index;
+            this.journal = journal;
+            this.lockFile = lockFile;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.maxello.hytalebodytypes;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PlayerSkin access resolved once per Player class and kept as MethodHandles.
+ * <p>
+ * Resolution results are cached per class, failures included, so a missing API costs
+ * one scan per class instead of one scan per apply.
+ */
+final class SkinAccessor {
+
+    // Same order as the PlayerSkin(String bodyCharacteristic, String underwear, ...) constructor, minus bodyCharacteristic
+    private static final String[] PART_GETTERS = {"getUnderwear", "getFace", "getEars", "getMouth", "getEyes", "getFacialHair", "getHaircut", "getEyebrows", "getPants", "getOverpants", "getUndertop", "getOvertop", "getShoes", "getHeadAccessory", "getFaceAccessory", "getEarAccessory", "getSkinFeature", "getGloves", "getCape"};
+    private static final int CONSTRUCTOR_ARGS = PART_GETTERS.length + 1;
+
+    private static final String[] APPLY_CANDIDATES = {"setSkin", "setPlayerSkin", "applySkin", "applyPlayerSkin", "updateSkin", "updatePlayerSkin"};
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType APPLIER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final ClassValue<SkinAccessor> BY_PLAYER_CLASS = new ClassValue<>() {
+        @Override
+        protected SkinAccessor computeValue(Class<?> playerClass) {
+            return resolve(playerClass);
+        }
+    };
+
+    private static final ClassValue<PartIdReader> PART_ID_READERS = new ClassValue<>() {
+        @Override
+        protected PartIdReader computeValue(Class<?> partIdClass) {
+            return PartIdReader.resolve(partIdClass);
+        }
+    };
+
+    private final String failure;
+    private final HBTMetrics.Failure failureCause;
+    private final MethodHandle[] skinSources;
+    private final MethodHandle bodyGetter;
+    private final MethodHandle[] partGetters;
+    private final boolean[] partIsString;
+    private final MethodHandle constructor;
+    private final MethodHandle applier;
+
+    private SkinAccessor(String failure, HBTMetrics.Failure failureCause, MethodHandle[] skinSources, MethodHandle bodyGetter, MethodHandle[] partGetters, boolean[] partIsString, MethodHandle constructor, MethodHandle applier) {
+        this.failure = failure;
+        this.failureCause = failureCause;
+        this.skinSources = skinSources;
+        this.bodyGetter = bodyGetter;
+        this.partGetters = partGetters;
+        this.partIsString = partIsString;
+        this.constructor = constructor;
+        this.applier = applier;
+    }
+
+    static SkinAccessor forPlayer(Class<?> playerClass) {
+        return BY_PLAYER_CLASS.get(playerClass);
+    }
+
+    private static SkinAccessor failed(HBTMetrics.Failure cause, String reason) {
+        return new SkinAccessor(reason, cause, null, null, null, null, null, null);
+    }
+
+    boolean isResolved() {
+        return failure == null;
+    }
+
+    /**
+     * Why resolution failed, or null when it succeeded.
+     */
+    String failure() {
+        return failure;
+    }
+
+    HBTMetrics.Failure failureCause() {
+        return failureCause;
+    }
+
+    Object readSkin(Object player) {
+        if (failure != null) return null;
+
+        for (MethodHandle source : skinSources) {
+            try {
+                Object v = (Object) source.invokeExact(player);
+                if (v != null) return v;
+            } catch (Throwable ignored) {
+            }
+        }
+        return null;
+    }
+
+    String readBodyCharacteristicId(Object skin) {
+        if (failure != null || bodyGetter == null) return null;
+
+        try {
+            Object partId = (Object) bodyGetter.invokeExact(skin);
+            if (partId == null) return null;
+            return PART_ID_READERS.get(partId.getClass()).assetId(partId);
+        } catch (Throwable ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Builds a new PlayerSkin with the same parts as {@code skin} and a different bodyCharacteristic,
+     * or returns the cached one for that exact combination.
+     */
+    Object rebuild(Object skin, String newBodyId, SkinCache cache) throws Throwable {
+        if (failure != null) return null;
+
+        String[] args = cache.args();
+        args[0] = newBodyId;
+        for (int i = 0; i < partGetters.length; i++) {
+            MethodHandle getter = partGetters[i];
+            Object v = (getter != null) ? (Object) getter.invokeExact(skin) : null;
+            if (v == null) {
+                args[i + 1] = null;
+                continue;
+            }
+            args[i + 1] = partIsString[i] ? (String) v : PART_ID_READERS.get(v.getClass()).stringify(v, cache);
+        }
+
+        Object cached = cache.get();
+        if (cached != null) return cached;
+
+        Object built = (Object) constructor.invokeExact(args);
+        if (built != null) cache.put(built);
+        return built;
+    }
+
+    static int constructorArgs() {
+        return CONSTRUCTOR_ARGS;
+    }
+
+    boolean apply(Object player, Object newSkin) {
+        if (failure != null) return false;
+
+        try {
+            applier.invokeExact(player, newSkin);
+            return true;
+        } catch (Throwable ignored) {
+            return false;
+        }
+    }
+
+    private static SkinAccessor resolve(Class<?> playerClass) {
+        List<MethodHandle> sources = new ArrayList<>();
+        Class<?> skinClass = null;
+
+        // 1) fields
+        for (Field f : playerClass.getDeclaredFields()) {
+            try {
+                if (!f.getType().getName().endsWith("PlayerSkin")) continue;
+                f.setAccessible(true);
+                sources.add(LOOKUP.unreflectGetter(f).asType(GETTER));
+                if (skinClass == null) skinClass = f.getType();
+            } catch (Throwable ignored) {
+            }
+        }
+
+        // 2) getter-like methods
+        for (Method m : playerClass.getMethods()) {
+            try {
+                if (m.getParameterCount() != 0) continue;
+                if (!m.getName().toLowerCase().contains("skin")) continue;
+                if (!m.getReturnType().getName().endsWith("PlayerSkin")) continue;
+                sources.add(LOOKUP.unreflect(m).asType(GETTER));
+                if (skinClass == null) skinClass = m.getReturnType();
+            } catch (Throwable ignored) {
+            }
+        }
+
+        if (skinClass == null) return failed(HBTMetrics.Failure.SKIN_NOT_FOUND, "PlayerSkin not found on " + playerClass.getName());
+
+        MethodHandle constructor = findConstructor(skinClass);
+        if (constructor == null) return failed(HBTMetrics.Failure.CONSTRUCTOR_MISSING, "No " + CONSTRUCTOR_ARGS + "-String constructor on " + skinClass.getName());
+
+        MethodHandle applier = findApplier(playerClass, skinClass);
+        if (applier == null) return failed(HBTMetrics.Failure.APPLY_METHOD_MISSING, "No method to apply " + skinClass.getSimpleName() + " onto " + playerClass.getName());
+
+        MethodHandle[] partGetters = new MethodHandle[PART_GETTERS.length];
+        boolean[] partIsString = new boolean[PART_GETTERS.length];
+        for (int i = 0; i < PART_GETTERS.length; i++) {
+            Method m = publicMethod(skinClass, PART_GETTERS[i]);
+            if (m == null) continue;
+            try {
+                partGetters[i] = LOOKUP.unreflect(m).asType(GETTER);
+                partIsString[i] = m.getReturnType() == String.class;
+            } catch (Throwable ignored) {
+            }
+        }
+
+        MethodHandle bodyGetter = null;
+        Method getBody = publicMethod(skinClass, "getBodyCharacteristic");
+        if (getBody != null) {
+            try {
+                bodyGetter = LOOKUP.unreflect(getBody).asType(GETTER);
+            } catch (Throwable ignored) {
+            }
+        }
+
+        return new SkinAccessor(null, null, sources.toArray(new MethodHandle[0]), bodyGetter, partGetters, partIsString, constructor, applier);
+    }
+
+    private static MethodHandle findConstructor(Class<?> skinClass) {
+        for (Constructor<?> c : skinClass.getConstructors()) {
+            Class<?>[] ps = c.getParameterTypes();
+            if (ps.length != CONSTRUCTOR_ARGS) continue;
+
+            boolean allStrings = true;
+            for (Class<?> p : ps) {
+                if (p != String.class) {
+                    allStrings = false;
+                    break;
+                }
+            }
+            if (!allStrings) continue;
+
+            try {
+                return LOOKUP.unreflectConstructor(c).asSpreader(String[].class, CONSTRUCTOR_ARGS).asType(MethodType.methodType(Object.class, String[].class));
+            } catch (Throwable ignored) {
+            }
+        }
+        return null;
+    }
+
+    private static MethodHandle findApplier(Class<?> playerClass, Class<?> skinClass) {
+        // Try common method names
+        for (String name : APPLY_CANDIDATES) {
+            try {
+                return LOOKUP.unreflect(playerClass.getMethod(name, skinClass)).asType(APPLIER);
+            } catch (Throwable ignored) {
+            }
+        }
+
+        // If Player doesn't expose it, it might live on another object (appearance/cosmetics).
+        for (Method getter : playerClass.getMethods()) {
+            try {
+                if (getter.getParameterCount() != 0) continue;
+                String n = getter.getName().toLowerCase();
+                if (!(n.contains("cosmetic") || n.contains("appearance") || n.contains("skin"))) continue;
+
+                for (Method m : getter.getReturnType().getMethods()) {
+                    if (m.getParameterCount() != 1 || m.getParameterTypes()[0] != skinClass) continue;
+                    String mn = m.getName().toLowerCase();
+                    if (mn.contains("set") || mn.contains("apply") || mn.contains("update")) {
+                        MethodHandle target = LOOKUP.unreflect(m).asType(APPLIER);
+                        return MethodHandles.filterArguments(target, 0, LOOKUP.unreflect(getter).asType(GETTER));
+                    }
+                }
+            } catch (Throwable ignored) {
+            }
+        }
+
+        return null;
+    }
+
+    private static Method publicMethod(Class<?> type, String name) {
+        try {
+            return type.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads PlayerSkinPartId-like objects (assetId / textureId / variantId).
+     */
+    private static final class PartIdReader {
+
+        private static final PartIdReader MISSING = new PartIdReader(null, null, null);
+
+        private final MethodHandle assetId;
+        private final MethodHandle textureId;
+        private final MethodHandle variantId;
+
+        private PartIdReader(MethodHandle assetId, MethodHandle textureId, MethodHandle variantId) {
+            this.assetId = assetId;
+            this.textureId = textureId;
+            this.variantId = variantId;
+        }
+
+        static PartIdReader resolve(Class<?> partIdClass) {
+            try {
+                return new PartIdReader(LOOKUP.unreflect(partIdClass.getMethod("getAssetId")).asType(GETTER), LOOKUP.unreflect(partIdClass.getMethod("getTextureId")).asType(GETTER), LOOKUP.unreflect(partIdClass.getMethod("getVariantId")).asType(GETTER));
+            } catch (Throwable ignored) {
+                return MISSING;
+            }
+        }
+
+        String assetId(Object partId) throws Throwable {
+            if (assetId == null) return null;
+            Object asset = (Object) assetId.invokeExact(partId);
+            return (asset != null) ? asset.toString() : null;
+        }
+
+        String stringify(Object partId, SkinCache cache) throws Throwable {
+            if (assetId == null) return null;
+
+            Object asset = (Object) assetId.invokeExact(partId);
+            if (asset == null) return null;
+            Object tex = (Object) textureId.invokeExact(partId);
+            Object var = (Object) variantId.invokeExact(partId);
+
+            return cache.internPartId(asset, tex, var);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Flyweights for the apply path: interned part-ID strings and a bounded LRU of rebuilt PlayerSkins.
+ * <p>
+ * Most players share a handful of outfits, so toggling back and forth (or a second player with
+ * the same parts) gets the already built PlayerSkin instead of a new one. Lookups go through
+ * per-thread probe keys and don't allocate on a hit.
+ */
+final class SkinCache {
+
+    private final ConcurrentHashMap<PartKey, String> partIds = new ConcurrentHashMap<>();
+    private final ThreadLocal<PartKey> partProbe = ThreadLocal.withInitial(PartKey::new);
+
+    private final int maxSkins;
+    private final LinkedHashMap<SkinKey, Object> skins;
+    private final ThreadLocal<SkinKey> skinProbe;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    SkinCache(int maxSkins, int constructorArgs) {
+        this.maxSkins = Math.max(0, maxSkins);
+        this.skins = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SkinKey, Object> eldest) {
+                return size() > SkinCache.this.maxSkins;
+            }
+        };
+        this.skinProbe = ThreadLocal.withInitial(() -> new SkinKey(new String[constructorArgs]));
+    }
+
+    /**
+     * Canonical "asset.texture.variant" string for a part ID; only the first sighting concatenates.
+     */
+    String internPartId(@Nonnull Object asset, Object texture, Object variant) {
+        PartKey probe = partProbe.get().set(asset, texture, variant);
+        String s = partIds.get(probe);
+        if (s != null) return s;
+
+        s = asset.toString();
+        if (texture != null) s += "." + texture;
+        if (variant != null) s += "." + variant;
+
+        String prev = partIds.putIfAbsent(new PartKey().set(asset, texture, variant), s);
+        return (prev != null) ? prev : s;
+    }
+
+    /**
+     * Per-thread buffer for PlayerSkin constructor arguments, to be filled before {@link #get()}.
+     */
+    String[] args() {
+        return skinProbe.get().parts;
+    }
+
+    /**
+     * Cached skin for the current {@link #args()}, or null.
+     */
+    Object get() {
+        if (maxSkins == 0) return null;
+
+        SkinKey probe = skinProbe.get().rehash();
+        Object skin;
+        synchronized (skins) {
+            skin = skins.get(probe);
+        }
+        if (skin != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return skin;
+    }
+
+    /**
+     * Caches {@code skin} under the current {@link #args()}.
+     */
+    void put(@Nonnull Object skin) {
+        if (maxSkins == 0) return;
+
+        SkinKey key = new SkinKey(args().clone()).rehash();
+        synchronized (skins) {
+            skins.put(key, skin);
+        }
+    }
+
+    void clear() {
+        synchronized (skins) {
+            skins.clear();
+        }
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    int size() {
+        synchronized (skins) {
+            return skins.size();
+        }
+    }
+
+    private static final class PartKey {
+        Object asset;
+        Object texture;
+        Object variant;
+        int hash;
+
+        PartKey set(Object asset, Object texture, Object variant) {
+            this.asset = asset;
+            this.texture = texture;
+            this.variant = variant;
+            this.hash = (asset.hashCode() * 31 + Objects.hashCode(texture)) * 31 + Objects.hashCode(variant);
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PartKey k && hash == k.hash && asset.equals(k.asset) && Objects.equals(texture, k.texture) && Objects.equals(variant, k.variant);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class SkinKey {
+        final String[] parts;
+        int hash;
+
+        SkinKey(String[] parts) {
+            this.parts = parts;
+        }
+
+        SkinKey rehash() {
+            this.hash = Arrays.hashCode(parts);
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SkinKey k && hash == k.hash && Arrays.equals(parts, k.parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Where {@link PlayerStateCache} reads and writes player state.
+ * <p>
+ * {@link ShardedStateStorage} keeps it in this node's data directory; with {@code state.sharedDir}
+ * set, {@link SharedDirectoryBackend} keeps it in a directory all nodes of a network use, so a
+ * player's setting follows them between nodes.
+ */
+interface StateBackend {
+
+    static StateBackend fromConfig(@Nonnull Path dataDir, @Nonnull HBTConfig config) {
+        long compactAfterBytes = config.getLong("journal.compactAfterBytes", 64L << 10);
+        String sharedDir = config.getString("state.sharedDir", "");
+        return sharedDir.isEmpty()
+                ? new ShardedStateStorage(dataDir.resolve("shards"), compactAfterBytes)
+                : new SharedDirectoryBackend(Paths.get(sharedDir), compactAfterBytes);
+    }
+
+    void init() throws IOException;
+
+    boolean isEmpty();
+
+    short read(@Nonnull UUID uuid) throws IOException;
+
+    /**
+     * Writes the current state of {@code players}.
+     */
+    void append(@Nonnull Collection<UUID> players, @Nonnull PlayerStateStore state) throws IOException;
+
+    /**
+     * Stores every entry of {@code all}, keeping entries that are already stored. Used for one-time imports.
+     */
+    void importAll(@Nonnull PlayerStateStore all) throws IOException;
+
+    /**
+     * True if other nodes write to the same state, see {@link #poll()}.
+     */
+    default boolean isShared() {
+        return false;
+    }
+
+    /**
+     * Called when another node compacted a shard and it was read again whole.
+     */
+    interface ShardListener {
+        /**
+         * @param state everything the shard holds now; players not in it have no state (are off)
+         */
+        void replaced(int shard, @Nonnull PlayerStateStore state);
+    }
+
+    /**
+     * Called with every change another node made, from {@link #poll()} or a later {@link #append}:
+     * appended records through {@code changed}, shards another node compacted through {@code replaced}.
+     */
+    default void onRemoteChange(@Nonnull PlayerStateStore.Visitor changed, @Nonnull ShardListener replaced) {
+    }
+
+    /**
+     * Picks up what other nodes wrote since the last call.
+     */
+    default void poll() throws IOException {
+    }
+}
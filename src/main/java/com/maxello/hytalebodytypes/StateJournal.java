@@ -0,0 +1,484 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of toggle changes plus a snapshot it gets folded into.
+ * <p>
+ * Both files are a small header followed by fixed-size records (UUID as two longs, then the state:
+ * one byte in version 1 files, a short since version 2). Writing a change costs one record append,
+ * independent of how many players are stored; {@link #compact(PlayerStateStore)} rewrites the
+ * snapshot once the journal grew past a threshold.
+ * <p>
+ * Since version 3 a snapshot header carries a generation and the record count, and a CRC32C of
+ * everything before it ends the file; a journal header carries the generation it continues. A
+ * compaction keeps the replaced snapshot and its journal as {@code .prev}, so a snapshot that is
+ * truncated or fails its checksum is recovered from the previous generation instead of being read
+ * as empty. Only a snapshot that passes its checks replaces the {@code .prev} files; while running
+ * on the previous generation, a compaction adds the journal to the previous one instead. Version 1
+ * and 2 files are still read, and an older journal is compacted into version 3 before the first
+ * append.
+ * <p>
+ * Appends are forced to disk before {@link #append} returns.
+ */
+final class StateJournal {
+
+    private static final int SNAPSHOT_MAGIC = 0x48425453; // "HBTS"
+    private static final int JOURNAL_MAGIC = 0x4842544A; // "HBTJ"
+    private static final int VERSION = 3;
+
+    // magic, version; all a version 1 or 2 header has
+    private static final int LEGACY_HEADER_BYTES = 8;
+    // + generation, record count
+    private static final int SNAPSHOT_HEADER_BYTES = 24;
+    // + generation the journal continues
+    private static final int JOURNAL_HEADER_BYTES = 16;
+    private static final int CHECKSUM_BYTES = 4;
+    static final int RECORD_BYTES = 18;
+    private static final int V1_RECORD_BYTES = 17;
+
+    // Smaller snapshots are cheaper to read than to map
+    private static final long MAP_THRESHOLD = 1L << 20;
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final Path previousSnapshotFile;
+    private final Path previousJournalFile;
+    private final long compactAfterBytes;
+
+    private long journalBytes;
+    // The last replay had to fall back to the previous generation
+    private boolean snapshotCorrupt;
+
+    StateJournal(@Nonnull Path snapshotFile, @Nonnull Path journalFile, long compactAfterBytes) {
+        this.snapshotFile = snapshotFile;
+        this.journalFile = journalFile;
+        this.previousSnapshotFile = sibling(snapshotFile, ".prev");
+        this.previousJournalFile = sibling(journalFile, ".prev");
+        this.compactAfterBytes = compactAfterBytes;
+    }
+
+    boolean exists() {
+        return Files.exists(snapshotFile) || Files.exists(journalFile) || Files.exists(previousSnapshotFile);
+    }
+
+    /**
+     * Replays snapshot then journal into {@code into}. A torn record at the end of the journal is ignored.
+     *
+     * @throws IOException if neither the snapshot nor the previous generation can be read
+     */
+    void load(@Nonnull PlayerStateStore into) throws IOException {
+        replay(into::put);
+    }
+
+    /**
+     * Replays snapshot then journal into {@code visitor}. Nothing is replayed from a snapshot that
+     * fails its checks; the previous generation and both journals stand in for it.
+     *
+     * @return the journal position after the last complete record, for {@link #tail}
+     */
+    long replay(@Nonnull PlayerStateStore.Visitor visitor) throws IOException {
+        Snapshot snapshot = readSnapshots();
+        long generation = 0;
+        if (snapshot != null) {
+            visit(snapshot.records, snapshot.recordBytes, visitor);
+            generation = snapshot.generation;
+        }
+
+        // Only journals written on top of the snapshot used; older ones are folded into it
+        readJournal(previousJournalFile, 0, generation, visitor);
+        long end = readJournal(journalFile, 0, generation, visitor);
+        journalBytes = end;
+        return end;
+    }
+
+    /**
+     * Replays the journal records from byte {@code position} on, e.g. the ones another node appended
+     * since the position was taken.
+     *
+     * @return the position after the last complete record
+     */
+    long tail(long position, @Nonnull PlayerStateStore.Visitor visitor) throws IOException {
+        return readJournal(journalFile, position, Long.MIN_VALUE, visitor);
+    }
+
+    /**
+     * Size of the journal file, 0 if there is none.
+     */
+    long journalSize() throws IOException {
+        return Files.exists(journalFile) ? Files.size(journalFile) : 0;
+    }
+
+    /**
+     * Identity of the current snapshot file; it changes whenever a compaction replaces the snapshot.
+     */
+    Object snapshotGeneration() throws IOException {
+        if (!Files.exists(snapshotFile)) return null;
+
+        BasicFileAttributes a = Files.readAttributes(snapshotFile, BasicFileAttributes.class);
+        return List.of(String.valueOf(a.fileKey()), a.lastModifiedTime(), a.size());
+    }
+
+    /**
+     * Latest state of a single player, without materializing the rest.
+     */
+    short find(long msb, long lsb) throws IOException {
+        short[] found = {PlayerStateStore.NONE};
+        replay((m, l, state) -> {
+            if (m == msb && l == lsb) found[0] = state;
+        });
+        return found[0];
+    }
+
+    /**
+     * Appends the current state of {@code players} as read from {@code state}.
+     */
+    void append(@Nonnull Collection<UUID> players, @Nonnull PlayerStateStore state) throws IOException {
+        if (players.isEmpty()) return;
+        if (journalVersion() < VERSION) {
+            compact();
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(players.size() * RECORD_BYTES);
+        for (UUID uuid : players) {
+            putRecord(buf, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), state.get(uuid));
+        }
+        buf.flip();
+
+        try (FileChannel ch = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long size = ch.size();
+            if (size < JOURNAL_HEADER_BYTES) {
+                ch.truncate(0);
+                ch.write(journalHeader(latestGeneration()), 0);
+                size = JOURNAL_HEADER_BYTES;
+            } else {
+                // drop a torn record left by a crash so new records stay aligned
+                size -= (size - JOURNAL_HEADER_BYTES) % RECORD_BYTES;
+            }
+            long pos = size;
+            while (buf.hasRemaining()) {
+                pos += ch.write(buf, pos);
+            }
+            ch.force(false);
+            journalBytes = pos;
+        }
+    }
+
+    /**
+     * True once the journal grew past the threshold, or the snapshot needs replacing because the
+     * last replay had to recover from the previous generation.
+     */
+    boolean needsCompaction() {
+        return journalBytes >= compactAfterBytes || snapshotCorrupt;
+    }
+
+    /**
+     * Folds the journal into the snapshot.
+     */
+    void compact() throws IOException {
+        PlayerStateStore state = new StripedStateStore();
+        load(state);
+        compact(state);
+    }
+
+    /**
+     * Writes {@code state} as the new snapshot generation and starts an empty journal on top of it.
+     * Callers must make sure no append runs concurrently.
+     */
+    void compact(@Nonnull PlayerStateStore state) throws IOException {
+        long generation = latestGeneration() + 1;
+
+        ByteBuffer[] buf = {ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES + (state.size() + 1) * RECORD_BYTES + CHECKSUM_BYTES)};
+        buf[0].putInt(SNAPSHOT_MAGIC).putInt(VERSION).putLong(generation).putLong(0);
+        long[] count = {0};
+        state.forEach((msb, lsb, value) -> {
+            if (buf[0].remaining() < RECORD_BYTES + CHECKSUM_BYTES) {
+                buf[0] = grow(buf[0]);
+            }
+            putRecord(buf[0], msb, lsb, value);
+            count[0]++;
+        });
+        ByteBuffer out = buf[0];
+        out.putLong(16, count[0]);
+        CRC32C crc = new CRC32C();
+        crc.update(out.duplicate().flip());
+        out.putInt((int) crc.getValue());
+        out.flip();
+
+        Path tmp = sibling(snapshotFile, ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                ch.write(out);
+            }
+            ch.force(true);
+        }
+
+        boolean validated = validates(snapshotFile);
+        if (!validated && Files.exists(previousSnapshotFile)) {
+            // The snapshot is broken or missing (a compaction was cut short), so the previous
+            // generation is what we run on: it stays the fallback, and the journal written on top
+            // of either is still valid on top of it
+            setAsideCorruptSnapshot();
+            foldJournalIntoPrevious();
+        } else {
+            // The replaced generation and its journal become the fallback, unless it is the broken one
+            if (validated) {
+                Files.move(snapshotFile, previousSnapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                setAsideCorruptSnapshot();
+            }
+            if (Files.exists(journalFile)) {
+                Files.move(journalFile, previousJournalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        try (FileChannel ch = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(journalHeader(generation));
+            ch.force(true);
+        }
+        journalBytes = JOURNAL_HEADER_BYTES;
+        snapshotCorrupt = false;
+    }
+
+    private static boolean validates(Path snapshot) {
+        try {
+            return readSnapshot(snapshot) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Rewrites the previous journal as the records of both journals that apply on top of the previous
+     * snapshot, the previous journal's first. A previous journal of an older generation is stale and
+     * dropped.
+     */
+    private void foldJournalIntoPrevious() throws IOException {
+        if (!Files.exists(journalFile)) return;
+
+        long kept = headerGeneration(previousSnapshotFile);
+        ByteBuffer[] buf = {ByteBuffer.allocate(JOURNAL_HEADER_BYTES + 64 * RECORD_BYTES)};
+        buf[0].put(journalHeader(kept));
+        PlayerStateStore.Visitor collect = (msb, lsb, state) -> {
+            if (buf[0].remaining() < RECORD_BYTES) {
+                buf[0] = grow(buf[0]);
+            }
+            putRecord(buf[0], msb, lsb, state);
+        };
+        readJournal(previousJournalFile, 0, kept, collect);
+        readJournal(journalFile, 0, kept, collect);
+        ByteBuffer out = buf[0].flip();
+
+        Path tmp = sibling(previousJournalFile, ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                ch.write(out);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, previousJournalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(journalFile);
+    }
+
+    private void setAsideCorruptSnapshot() throws IOException {
+        if (Files.exists(snapshotFile)) {
+            Files.move(snapshotFile, sibling(snapshotFile, ".corrupt"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * The snapshot, or the previous generation when the snapshot is missing (a compaction was cut
+     * short) or fails its checks. Null if there is neither.
+     */
+    private Snapshot readSnapshots() throws IOException {
+        IOException failure = null;
+        try {
+            Snapshot current = readSnapshot(snapshotFile);
+            if (current != null) {
+                snapshotCorrupt = false;
+                return current;
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+
+        Snapshot previous;
+        try {
+            previous = readSnapshot(previousSnapshotFile);
+        } catch (IOException e) {
+            if (failure == null) throw e;
+            failure.addSuppressed(e);
+            throw failure;
+        }
+        if (failure != null) {
+            if (previous == null) throw failure;
+            HBTLog.warn("%s, recovered %s from the previous generation", failure.getMessage(), snapshotFile);
+        }
+        snapshotCorrupt = failure != null;
+        return previous;
+    }
+
+    private static Snapshot readSnapshot(Path file) throws IOException {
+        if (!Files.exists(file)) return null;
+
+        ByteBuffer buf = readFile(file);
+        if (buf.limit() < LEGACY_HEADER_BYTES) throw new IOException("Truncated header in " + file);
+        if (buf.getInt(0) != SNAPSHOT_MAGIC) throw new IOException("Bad magic in " + file);
+        int version = buf.getInt(4);
+
+        if (version == 1 || version == 2) {
+            // no count or checksum yet; a torn record at the end is dropped
+            int recordBytes = (version == 1) ? V1_RECORD_BYTES : RECORD_BYTES;
+            return new Snapshot(0, recordBytes, buf.position(LEGACY_HEADER_BYTES).slice());
+        }
+        if (version != VERSION) throw new IOException("Unsupported version " + version + " in " + file);
+
+        if (buf.limit() < SNAPSHOT_HEADER_BYTES + CHECKSUM_BYTES) throw new IOException("Truncated header in " + file);
+        long generation = buf.getLong(8);
+        long count = buf.getLong(16);
+        long expected = SNAPSHOT_HEADER_BYTES + count * RECORD_BYTES + CHECKSUM_BYTES;
+        if (count < 0 || buf.limit() != expected) {
+            throw new IOException(file + " holds " + buf.limit() + " bytes, expected " + expected + " for " + count + " records");
+        }
+
+        int end = buf.limit() - CHECKSUM_BYTES;
+        CRC32C crc = new CRC32C();
+        crc.update(buf.duplicate().limit(end));
+        if ((int) crc.getValue() != buf.getInt(end)) throw new IOException("Checksum mismatch in " + file);
+
+        return new Snapshot(generation, RECORD_BYTES, buf.limit(end).position(SNAPSHOT_HEADER_BYTES).slice());
+    }
+
+    /**
+     * Replays the journal's records from byte {@code position} on, unless it continues a generation
+     * older than {@code minGeneration}.
+     *
+     * @return the position after the last complete record, 0 without a (complete) header
+     */
+    private static long readJournal(Path file, long position, long minGeneration, PlayerStateStore.Visitor visitor) throws IOException {
+        if (!Files.exists(file)) return 0;
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_BYTES);
+            while (header.hasRemaining()) {
+                if (ch.read(header, header.position()) < 0) break;
+            }
+            if (header.position() < LEGACY_HEADER_BYTES) return 0;
+            if (header.getInt(0) != JOURNAL_MAGIC) throw new IOException("Bad magic in " + file);
+
+            int version = header.getInt(4);
+            if (version < 1 || version > VERSION) throw new IOException("Unsupported version " + version + " in " + file);
+            int headerBytes = (version < 3) ? LEGACY_HEADER_BYTES : JOURNAL_HEADER_BYTES;
+            if (header.position() < headerBytes) return 0;
+            int recordBytes = (version == 1) ? V1_RECORD_BYTES : RECORD_BYTES;
+
+            long end = ch.size();
+            end -= (end - headerBytes) % recordBytes;
+            long generation = (version < 3) ? 0 : header.getLong(8);
+            long start = Math.max(position, headerBytes);
+            if (generation < minGeneration || end <= start) return end;
+
+            ByteBuffer buf = ByteBuffer.allocate((int) (end - start));
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, start + buf.position()) < 0) break;
+            }
+            visit(buf.flip(), recordBytes, visitor);
+            return end;
+        }
+    }
+
+    private static void visit(ByteBuffer records, int recordBytes, PlayerStateStore.Visitor visitor) {
+        while (records.remaining() >= recordBytes) {
+            long msb = records.getLong();
+            long lsb = records.getLong();
+            visitor.accept(msb, lsb, (recordBytes == V1_RECORD_BYTES) ? (short) (records.get() & 0xFF) : records.getShort());
+        }
+    }
+
+    private static ByteBuffer readFile(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size >= MAP_THRESHOLD) {
+                // stays valid after the channel is closed
+                return ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+
+            ByteBuffer buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining()) {
+                if (ch.read(buf) < 0) break;
+            }
+            return buf.flip();
+        }
+    }
+
+    /**
+     * Generation of the newest snapshot on disk, checked or not; 0 before the first version 3 one.
+     */
+    private long latestGeneration() throws IOException {
+        return Math.max(headerGeneration(snapshotFile), headerGeneration(previousSnapshotFile));
+    }
+
+    private static long headerGeneration(Path file) throws IOException {
+        if (!Files.exists(file)) return 0;
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(16);
+            ch.read(header, 0);
+            boolean v3 = header.position() == 16 && header.getInt(0) == SNAPSHOT_MAGIC && header.getInt(4) == VERSION;
+            return v3 ? Math.max(0, header.getLong(8)) : 0;
+        }
+    }
+
+    /**
+     * Version in the journal's header, or {@link #VERSION} when there is no (complete) header yet.
+     */
+    private int journalVersion() throws IOException {
+        return journalVersion(journalFile);
+    }
+
+    private static int journalVersion(Path file) throws IOException {
+        if (!Files.exists(file)) return VERSION;
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(LEGACY_HEADER_BYTES);
+            ch.read(header, 0);
+            return (header.position() < LEGACY_HEADER_BYTES) ? VERSION : header.getInt(4);
+        }
+    }
+
+    private static void putRecord(ByteBuffer buf, long msb, long lsb, short state) {
+        buf.putLong(msb);
+        buf.putLong(lsb);
+        buf.putShort(state);
+    }
+
+    private static ByteBuffer journalHeader(long generation) {
+        return ByteBuffer.allocate(JOURNAL_HEADER_BYTES).putInt(JOURNAL_MAGIC).putInt(VERSION).putLong(generation).flip();
+    }
+
+    private static ByteBuffer grow(ByteBuffer buf) {
+        ByteBuffer bigger = ByteBuffer.allocate(buf.capacity() * 2);
+        buf.flip();
+        return bigger.put(buf);
+    }
+
+    private static Path sibling(Path file, String suffix) {
+        return file.resolveSibling(file.getFileName() + suffix);
+    }
+
+    private record Snapshot(long generation, int recordBytes, ByteBuffer records) {
+    }
+}
@@ -0,0 +1,133 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind saving for the toggle state.
+ * <p>
+ * Mutations only mark the state dirty; a background flusher writes one snapshot every
+ * {@code flushIntervalMs} or as soon as {@code flushAfterChanges} changes piled up.
+ * {@link #close()} runs the final flush on plugin shutdown.
+ */
+final class StatePersister {
+
+    enum Durability {
+        /** Write on the calling thread for every change (old behaviour). */
+        IMMEDIATE,
+        /** Coalesce changes and write from the background flusher. */
+        BATCHED,
+        /** Only write on shutdown. */
+        SHUTDOWN_ONLY
+    }
+
+    private final Runnable writer;
+    private final HBTMetrics metrics;
+    private final Durability durability;
+    private final long flushIntervalMs;
+    private final int flushAfterChanges;
+
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+    private final LongAdder coalescedSaves = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final Object writeLock = new Object();
+
+    private volatile ScheduledExecutorService flusher;
+
+    StatePersister(@Nonnull Runnable writer, @Nonnull HBTMetrics metrics, @Nonnull Durability durability, long flushIntervalMs, int flushAfterChanges) {
+        this.writer = writer;
+        this.metrics = metrics;
+        this.durability = durability;
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.flushAfterChanges = Math.max(1, flushAfterChanges);
+    }
+
+    static StatePersister fromConfig(@Nonnull Runnable writer, @Nonnull HBTConfig config, @Nonnull HBTMetrics metrics) {
+        return new StatePersister(writer, metrics, config.getEnum("persistence.durability", Durability.BATCHED), config.getLong("persistence.flushIntervalMs", 2000), config.getInt("persistence.flushAfterChanges", 256));
+    }
+
+    void start() {
+        if (durability != Durability.BATCHED || flusher != null) return;
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "HBT-StatePersister");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    void markDirty() {
+        int pending = pendingChanges.incrementAndGet();
+
+        switch (durability) {
+            case IMMEDIATE -> flush();
+            case BATCHED -> {
+                // Only the change that crosses the threshold schedules an early flush
+                ScheduledExecutorService f = flusher;
+                if (pending == flushAfterChanges && f != null) {
+                    try {
+                        f.execute(this::flush);
+                    } catch (RejectedExecutionException ignored) {
+                        // shutting down, close() flushes
+                    }
+                }
+            }
+            case SHUTDOWN_ONLY -> {
+                // written in close()
+            }
+        }
+    }
+
+    /**
+     * Writes one snapshot if anything changed since the last write.
+     */
+    void flush() {
+        synchronized (writeLock) {
+            int pending = pendingChanges.getAndSet(0);
+            if (pending == 0) return;
+            if (pending > 1) coalescedSaves.add(pending - 1);
+
+            long start = System.nanoTime();
+            try {
+                writer.run();
+                writes.increment();
+                metrics.persistFlush.recordSince(start);
+            } catch (RuntimeException e) {
+                // keep it dirty so the next flush retries
+                pendingChanges.addAndGet(pending);
+                HBTLog.error("Saving state failed: %s", e);
+            }
+        }
+    }
+
+    void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flusher = null;
+        }
+        flush();
+    }
+
+    Durability durability() {
+        return durability;
+    }
+
+    long coalescedSaves() {
+        return coalescedSaves.sum();
+    }
+
+    long writes() {
+        return writes.sum();
+    }
+}
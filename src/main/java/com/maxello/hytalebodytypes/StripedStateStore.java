@@ -0,0 +1,251 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * {@link PlayerStateStore} made of lock-striped open-addressing tables over primitive arrays.
+ * <p>
+ * An entry costs two longs and a short (plus load-factor slack) instead of a boxed UUID, a map node
+ * and a Boolean. Reads are optimistic and never allocate.
+ */
+final class StripedStateStore implements PlayerStateStore {
+
+    private static final int STRIPE_BITS = 6;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.7f;
+    // Stripe, its StampedLock and the Table object, with compressed oops
+    private static final int STRIPE_OVERHEAD_BYTES = 64;
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+
+    StripedStateStore() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public short get(long msb, long lsb) {
+        long h = hash(msb, lsb);
+        return stripe(h).get(msb, lsb, h);
+    }
+
+    @Override
+    public short put(long msb, long lsb, short state) {
+        long h = hash(msb, lsb);
+        Stripe s = stripe(h);
+        long stamp = s.lock.writeLock();
+        try {
+            return s.putLocked(msb, lsb, h, state);
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public short update(long msb, long lsb, @Nonnull IntUnaryOperator fn) {
+        long h = hash(msb, lsb);
+        Stripe s = stripe(h);
+        long stamp = s.lock.writeLock();
+        try {
+            short next = (short) fn.applyAsInt(s.getLocked(s.table, msb, lsb, h));
+            s.putLocked(msb, lsb, h, next);
+            return next;
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        int n = 0;
+        for (Stripe s : stripes) {
+            long stamp = s.lock.readLock();
+            try {
+                n += s.size;
+            } finally {
+                s.lock.unlockRead(stamp);
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe s : stripes) {
+            long stamp = s.lock.writeLock();
+            try {
+                s.table = new Table(INITIAL_CAPACITY);
+                s.size = 0;
+            } finally {
+                s.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Heap held by the store, worked out from its array lengths (16-byte array headers, 8 bytes per
+     * key half, 2 per state) plus a fixed allowance per stripe. An estimate for sizing, not a measurement.
+     */
+    long footprintBytes() {
+        long bytes = ARRAY_HEADER_BYTES + 4L * stripes.length;
+        for (Stripe s : stripes) {
+            Table t = s.table;
+            bytes += STRIPE_OVERHEAD_BYTES + ARRAY_HEADER_BYTES + 8L * t.keys.length + ARRAY_HEADER_BYTES + 2L * t.states.length;
+        }
+        return bytes;
+    }
+
+    @Override
+    public void forEach(@Nonnull Visitor visitor) {
+        for (Stripe s : stripes) {
+            long stamp = s.lock.readLock();
+            try {
+                Table t = s.table;
+                for (int i = 0; i < t.states.length; i++) {
+                    if (t.states[i] != NONE) {
+                        visitor.accept(t.keys[i << 1], t.keys[(i << 1) + 1], t.states[i]);
+                    }
+                }
+            } finally {
+                s.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    private Stripe stripe(long h) {
+        return stripes[(int) (h >>> (64 - STRIPE_BITS))];
+    }
+
+    private static long hash(long msb, long lsb) {
+        // murmur3 fmix64 over both halves
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Keys are stored as msb/lsb pairs; a slot is empty when its state is {@link #NONE}.
+     */
+    private static final class Table {
+        final long[] keys;
+        final short[] states;
+
+        Table(int capacity) {
+            this.keys = new long[capacity << 1];
+            this.states = new short[capacity];
+        }
+    }
+
+    private static final class Stripe {
+        final StampedLock lock = new StampedLock();
+        volatile Table table = new Table(INITIAL_CAPACITY);
+        int size;
+
+        short get(long msb, long lsb, long h) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                short v = getLocked(table, msb, lsb, h);
+                if (lock.validate(stamp)) return v;
+            }
+
+            stamp = lock.readLock();
+            try {
+                return getLocked(table, msb, lsb, h);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        short getLocked(Table t, long msb, long lsb, long h) {
+            int mask = t.states.length - 1;
+            int i = (int) h & mask;
+            // bounded so a torn optimistic read can't spin forever
+            for (int probes = 0; probes <= mask; probes++) {
+                short state = t.states[i];
+                if (state == NONE) return NONE;
+                if (t.keys[i << 1] == msb && t.keys[(i << 1) + 1] == lsb) return state;
+                i = (i + 1) & mask;
+            }
+            return NONE;
+        }
+
+        short putLocked(long msb, long lsb, long h, short state) {
+            Table t = table;
+            int mask = t.states.length - 1;
+            int i = (int) h & mask;
+            while (t.states[i] != NONE) {
+                if (t.keys[i << 1] == msb && t.keys[(i << 1) + 1] == lsb) {
+                    short prev = t.states[i];
+                    if (state == NONE) {
+                        removeAt(t, i);
+                        size--;
+                    } else {
+                        t.states[i] = state;
+                    }
+                    return prev;
+                }
+                i = (i + 1) & mask;
+            }
+
+            if (state == NONE) return NONE;
+
+            t.keys[i << 1] = msb;
+            t.keys[(i << 1) + 1] = lsb;
+            t.states[i] = state;
+            if (++size > t.states.length * LOAD_FACTOR) {
+                resize();
+            }
+            return NONE;
+        }
+
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        private static void removeAt(Table t, int i) {
+            int mask = t.states.length - 1;
+            int hole = i;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (t.states[j] == NONE) break;
+
+                int home = (int) hash(t.keys[j << 1], t.keys[(j << 1) + 1]) & mask;
+                // move j into the hole unless its home lies cyclically in (hole, j]
+                boolean stays = (hole <= j) ? (hole < home && home <= j) : (hole < home || home <= j);
+                if (stays) continue;
+
+                t.keys[hole << 1] = t.keys[j << 1];
+                t.keys[(hole << 1) + 1] = t.keys[(j << 1) + 1];
+                t.states[hole] = t.states[j];
+                hole = j;
+            }
+            t.states[hole] = NONE;
+        }
+
+        private void resize() {
+            Table old = table;
+            Table t = new Table(old.states.length << 1);
+            int mask = t.states.length - 1;
+            for (int k = 0; k < old.states.length; k++) {
+                if (old.states[k] == NONE) continue;
+
+                long msb = old.keys[k << 1];
+                long lsb = old.keys[(k << 1) + 1];
+                int i = (int) hash(msb, lsb) & mask;
+                while (t.states[i] != NONE) {
+                    i = (i + 1) & mask;
+                }
+                t.keys[i << 1] = msb;
+                t.keys[(i << 1) + 1] = lsb;
+                t.states[i] = old.states[k];
+            }
+            table = t;
+        }
+    }
+}
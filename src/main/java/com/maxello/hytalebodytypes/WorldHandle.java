@@ -0,0 +1,24 @@
+package com.maxello.hytalebodytypes;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * What the join and bulk apply paths need of a world: its thread and its players. The server's
+ * World behind a seam, like {@link PlayerHandle}, so the same paths run headless against stand-ins.
+ */
+interface WorldHandle {
+
+    /**
+     * Runs {@code task} on the world thread.
+     *
+     * @throws RuntimeException if the world no longer takes tasks, e.g. it is shutting down
+     */
+    void execute(@Nonnull Runnable task);
+
+    /**
+     * Players currently in the world with an entity. World thread only.
+     */
+    @Nonnull
+    List<PlayerHandle> players();
+}
@@ -0,0 +1,75 @@
+package com.maxello.hytalebodytypes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BodyIdTableTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void seedsBustAtOrdinalZero() throws IOException {
+        BodyIdTable ids = open();
+
+        assertEquals(BodyIdTable.FIRST_ID, ids.id(0));
+        assertEquals(0, ids.intern("HBT_Bust"));
+        // the legacy on byte is ordinal + 1
+        assertEquals("HBT_Bust", ids.id(BodyTypeCatalog.STATE_ON - 1));
+    }
+
+    @Test
+    void ordinalsSurviveReloadAndReordering() throws IOException {
+        BodyIdTable ids = open();
+        int muscular = ids.intern("Muscular");
+        int def = ids.intern("Default");
+
+        BodyIdTable reopened = open();
+        assertEquals(def, reopened.intern("Default"));
+        assertEquals(muscular, reopened.intern("Muscular"));
+        assertEquals(3, reopened.intern("Slim"));
+
+        // the catalog lists them in another order; the stored bytes keep their meaning
+        BodyTypeCatalog catalog = BodyTypeCatalog.parse("[{\"Id\": \"Slim\"}, {\"Id\": \"Default\"}, {\"Id\": \"HBT_Bust\"}, {\"Id\": \"Muscular\"}]", reopened);
+        assertEquals("Muscular", catalog.byChoice((byte) (muscular + 1)).id());
+        assertEquals("Slim", catalog.byChoice((byte) 4).id());
+        assertEquals(List.of("HBT_Bust", "Muscular", "Default", "Slim"), Files.readAllLines(dir.resolve("body_ids.txt"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void seesIdsAnotherNodeAssigned() throws IOException {
+        BodyIdTable here = open();
+        BodyIdTable there = open();
+
+        int assigned = there.intern("Remote");
+        assertNull(here.id(assigned), "only in memory until re-read");
+        assertEquals("Remote", here.refresh(assigned));
+        assertEquals(assigned, here.intern("Remote"));
+        assertNull(here.refresh(assigned + 1));
+    }
+
+    @Test
+    void stopsAtMaxIds() throws IOException {
+        BodyIdTable ids = open();
+        for (int i = 1; i < BodyIdTable.MAX_IDS; i++) {
+            assertEquals(i, ids.intern("Id" + i));
+        }
+        assertEquals(-1, ids.intern("OneTooMany"));
+        assertEquals(BodyIdTable.MAX_IDS, ids.size());
+    }
+
+    private BodyIdTable open() throws IOException {
+        BodyIdTable ids = new BodyIdTable(dir.resolve("body_ids.txt"));
+        ids.load();
+        return ids;
+    }
+}
@@ -0,0 +1,102 @@
+package com.maxello.hytalebodytypes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BodyTypeCatalogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void parsesBundledFileInFileOrder() throws IOException {
+        BodyTypeCatalog catalog = BodyTypeCatalog.parse(bundled(), table());
+
+        assertEquals(List.of("Default", "Muscular", "HBT_Bust"), catalog.entries().stream().map(BodyTypeCatalog.Entry::id).toList());
+        assertEquals("avatarCustomization.bodyCharacteristics.Muscular.name", catalog.byId("muscular").name());
+        assertNull(catalog.byChoice(BodyTypeCatalog.NONE));
+    }
+
+    @Test
+    void legacyOnByteStillReadsAsBust() throws IOException {
+        // Default is listed first, but HBT_Bust holds ordinal 0 in the id table
+        BodyTypeCatalog catalog = BodyTypeCatalog.parse(bundled(), table());
+
+        assertEquals("HBT_Bust", catalog.byChoice(BodyTypeCatalog.STATE_ON).id());
+        assertEquals(BodyTypeCatalog.STATE_ON, catalog.byId("HBT_Bust").choice());
+    }
+
+    @Test
+    void nextFollowsFileOrderAndWraps() throws IOException {
+        BodyTypeCatalog catalog = BodyTypeCatalog.parse(bundled(), table());
+        byte def = catalog.byId("Default").choice();
+        byte muscular = catalog.byId("Muscular").choice();
+        byte bust = catalog.byId("HBT_Bust").choice();
+
+        assertEquals(def, catalog.next(BodyTypeCatalog.NONE));
+        assertEquals(muscular, catalog.next(def));
+        assertEquals(bust, catalog.next(muscular));
+        assertEquals(def, catalog.next(bust));
+        // a choice whose id is no longer defined starts over
+        assertEquals(def, catalog.next((byte) 200));
+    }
+
+    @Test
+    void keepsEntriesWithNestedObjects() throws IOException {
+        String json = """
+                [
+                  {"Id": "Plain", "Name": "Plain"},
+                  {"Id": "Nested", "Tint": {"Gradient": {"From": "#fff", "To": "#000"}}, "Tags": ["a", {"b": 1}]},
+                  {"Name": "Braces } and { in a string", "Id": "Escaped \\"quote\\""}
+                ]""";
+        BodyTypeCatalog catalog = BodyTypeCatalog.parse(json, table());
+
+        assertEquals(List.of("Plain", "Nested", "Escaped \"quote\""), catalog.entries().stream().map(BodyTypeCatalog.Entry::id).toList());
+        assertEquals("Nested", catalog.byId("nested").name());
+    }
+
+    @Test
+    void entryWithoutIdFailsLoudly() {
+        IOException e = assertThrows(IOException.class, () -> BodyTypeCatalog.parse("[{\"Id\": \"A\"}, {\"Name\": \"no id\", \"Sub\": {\"Id\": \"B\"}}]", table()));
+        assertTrue(e.getMessage().contains("#2"), e.getMessage());
+    }
+
+    @Test
+    void rejectsMalformedAndUnexpectedJson() {
+        assertThrows(IOException.class, () -> BodyTypeCatalog.parse("[{\"Id\": \"A\"", table()));
+        assertThrows(IOException.class, () -> BodyTypeCatalog.parse("{\"Id\": \"A\"}", table()));
+        assertThrows(IOException.class, () -> BodyTypeCatalog.parse("[]", table()));
+        assertThrows(IOException.class, () -> BodyTypeCatalog.parse("[{\"Id\": \"A\"}, {\"Id\": \"a\"}]", table()));
+    }
+
+    @Test
+    void byIdIgnoresCase() throws IOException {
+        BodyTypeCatalog catalog = BodyTypeCatalog.parse(bundled(), table());
+        assertSame(catalog.byId("HBT_Bust"), catalog.byId("hbt_bust"));
+    }
+
+    private BodyIdTable table() throws IOException {
+        BodyIdTable ids = new BodyIdTable(dir.resolve("body_ids.txt"));
+        ids.load();
+        return ids;
+    }
+
+    static String bundled() throws IOException {
+        try (InputStream in = BodyTypeCatalogTest.class.getClassLoader().getResourceAsStream(BodyTypeCatalog.RESOURCE)) {
+            if (in == null) throw new IOException("Missing resource " + BodyTypeCatalog.RESOURCE);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
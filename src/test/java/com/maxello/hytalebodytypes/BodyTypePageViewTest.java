@@ -0,0 +1,102 @@
+package com.maxello.hytalebodytypes;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Page clicks go through {@link BodyTypeActions} and the mailbox as on a server; each applied click
+ * refreshes a {@link BodyTypePageView} the way {@link BodyTypePage} does, and the emitted commands,
+ * bindings and packets are counted.
+ */
+class BodyTypePageViewTest {
+
+    @TempDir
+    Path dir;
+
+    private PlayerStateCache states;
+    private BodyTypeService service;
+    private PlayerActionMailbox mailbox;
+    private BodyTypeActions actions;
+    private ExecutorService world;
+    private StandInPlayerHandle handle;
+
+    private final BodyTypePageView view = new BodyTypePageView();
+    private final List<String> commands = new ArrayList<>();
+    private final List<String> bindings = new ArrayList<>();
+    private int packets;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        HBTConfig config = HBTConfig.load(dir.resolve("config.properties"));
+        HBTMetrics metrics = new HBTMetrics();
+        states = new PlayerStateCache(dir, config, metrics);
+        states.open();
+
+        BodyIdTable ids = new BodyIdTable(dir.resolve("body_ids.txt"));
+        ids.load();
+        BodyTypeCatalog catalog = BodyTypeCatalog.parse(BodyTypeCatalogTest.bundled(), ids);
+        service = new BodyTypeService(states, ids, catalog, BodyTypeService.BODY_BUST, new SkinCache(16, SkinAccessor.constructorArgs()), metrics);
+        mailbox = new PlayerActionMailbox(service);
+        actions = new BodyTypeActions(service, mailbox);
+
+        world = Executors.newSingleThreadExecutor();
+        handle = new StandInPlayerHandle(UUID.randomUUID(), "viewer", StandInPlayer.withOutfit(0), world);
+        states.playerJoined(handle.uuid());
+        states.prefetch(handle.uuid()).join();
+
+        view.build(service.bodyType(handle.uuid()), (selector, value) -> commands.add(selector + "=" + value), (selector, action) -> bindings.add(selector + ":" + action));
+    }
+
+    @AfterEach
+    void tearDown() {
+        world.shutdownNow();
+        states.close();
+    }
+
+    @Test
+    void buildSendsEverythingOnce() {
+        assertEquals(List.of(BodyTypePageView.STATUS_TEXT + "=Status: OFF", BodyTypePageView.STATUS_COLOR + "=#ff6b6b"), commands);
+        assertEquals(List.of("#EnableButton:Enable", "#DisableButton:Disable", "#ToggleButton:Toggle", "#CycleButton:Cycle", "#CloseButton:Close"), bindings);
+    }
+
+    @Test
+    void refreshSendsOnlyWhatChanged() throws Exception {
+        click("Enable");      // OFF -> HBT_Bust: text and color
+        click("Enable");      // unchanged: no packet
+        click("Disable");     // text and color
+        click("Disable");     // unchanged
+        click("Toggle");      // on: text and color
+        click("Toggle");      // off: text and color
+        click("Cycle");       // OFF -> Default: text and color
+        click("Cycle");       // Default -> Muscular: same color, text only
+
+        // after the two from build()
+        assertEquals(2 + 2 + 0 + 2 + 0 + 2 + 2 + 2 + 1, commands.size(), commands::toString);
+        assertEquals(6, packets);
+        // Refreshes never rebind
+        assertEquals(5, bindings.size());
+        assertEquals(BodyTypePageView.STATUS_TEXT + "=Status: Muscular", commands.get(commands.size() - 1));
+    }
+
+    // One click, applied before the next so nothing is coalesced
+    private void click(String action) throws Exception {
+        assertTrue(actions.runPageAction(action, handle, () -> {
+            if (view.refresh(service.bodyType(handle.uuid()), (selector, value) -> commands.add(selector + "=" + value))) {
+                packets++;
+            }
+        }));
+        LoadSimulationTest.awaitIdle(mailbox, List.of(world));
+    }
+}
@@ -0,0 +1,178 @@
+package com.maxello.hytalebodytypes;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The stored state (choice byte, restore ordinal + 1 in the high byte) through apply, restarts and the
+ * import of the old on/off files.
+ */
+class BodyTypeServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private ExecutorService world;
+    private PlayerStateCache states;
+    private BodyIdTable ids;
+    private BodyTypeService service;
+
+    @BeforeEach
+    void setUp() {
+        world = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        world.shutdownNow();
+        if (states != null) states.close();
+    }
+
+    @Test
+    void stateHoldsChoiceAndRestore() throws Exception {
+        start();
+        StandInPlayerHandle handle = join("Muscular");
+
+        service.setEnabled(handle.uuid(), true);
+        assertEquals(BodyTypeService.ApplyResult.APPLIED, onWorld(handle));
+        assertEquals(BodyTypeService.BODY_BUST, handle.body());
+        int restore = ids.ordinal("Muscular") + 1;
+        assertEquals(restore << 8 | BodyTypeCatalog.STATE_ON, states.get(handle.uuid()));
+
+        service.setEnabled(handle.uuid(), false);
+        assertEquals(BodyTypeService.ApplyResult.APPLIED, onWorld(handle));
+        assertEquals("Muscular", handle.body());
+        // restored, so the next switch on remembers afresh
+        assertEquals(PlayerStateStore.NONE, states.get(handle.uuid()));
+    }
+
+    @Test
+    void restoresTheBodyAcrossARestart() throws Exception {
+        start();
+        StandInPlayerHandle before = join("Muscular");
+        service.setEnabled(before.uuid(), true);
+        onWorld(before);
+        states.flush();
+        states.close();
+
+        start();
+        StandInPlayerHandle after = join(before.uuid(), BodyTypeService.BODY_BUST);
+        assertEquals("Muscular", service.restoreBodyId(after.uuid()));
+        service.setEnabled(after.uuid(), false);
+        assertEquals(BodyTypeService.ApplyResult.APPLIED, onWorld(after));
+        assertEquals("Muscular", after.body());
+    }
+
+    @Test
+    void importsLegacyJson() throws Exception {
+        UUID on = UUID.randomUUID();
+        UUID off = UUID.randomUUID();
+        Path json = dir.resolve("player_state.json");
+        Files.writeString(json, "{\"" + on + "\": true, \"" + off + "\": false}", StandardCharsets.UTF_8);
+
+        start();
+        join(on, "Default");
+        assertEquals(BodyTypeService.BODY_BUST, service.bodyType(on).id());
+        join(off, "Default");
+        assertFalse(service.isEnabled(off));
+        assertFalse(Files.exists(json));
+        assertTrue(Files.exists(dir.resolve("player_state.json.imported")));
+    }
+
+    @Test
+    void importsVersion1Journal() throws Exception {
+        UUID on = new UUID(1, 1);
+        UUID turnedOff = new UUID(2, 2);
+        Files.write(dir.resolve("player_state.snapshot"), StateJournalTest.legacy(0x48425453, 1, StateJournalTest.v1(1, 1, 1), StateJournalTest.v1(2, 2, 1)));
+        Files.write(dir.resolve("player_state.journal"), StateJournalTest.legacy(0x4842544A, 1, StateJournalTest.v1(2, 2, 0)));
+
+        start();
+        StandInPlayerHandle handle = join(on, "Default");
+        assertEquals(BodyTypeService.BODY_BUST, service.bodyType(on).id());
+        join(turnedOff, "Default");
+        assertFalse(service.isEnabled(turnedOff));
+
+        // the imported on still picks up a restore body in the new layout
+        assertEquals(BodyTypeService.ApplyResult.APPLIED, onWorld(handle));
+        assertEquals((ids.ordinal("Default") + 1) << 8 | BodyTypeCatalog.STATE_ON, states.get(on));
+    }
+
+    @Test
+    void internsABodyIdOffTheWorldThread() throws Exception {
+        start();
+        StandInPlayerHandle handle = join("Slim");
+        assertEquals(-1, ids.ordinal("Slim"));
+
+        service.setEnabled(handle.uuid(), true);
+        assertEquals(BodyTypeService.ApplyResult.APPLIED, onWorld(handle));
+        await(() -> "Slim".equals(service.restoreBodyId(handle.uuid())), "restore recorded once interned");
+        assertTrue(Files.readAllLines(dir.resolve("body_ids.txt"), StandardCharsets.UTF_8).contains("Slim"));
+
+        service.setEnabled(handle.uuid(), false);
+        onWorld(handle);
+        assertEquals("Slim", handle.body());
+    }
+
+    @Test
+    void rereadsARestoreIdAnotherNodeAssigned() throws Exception {
+        start();
+        StandInPlayerHandle handle = join(BodyTypeService.BODY_BUST);
+        BodyIdTable otherNode = new BodyIdTable(dir.resolve("body_ids.txt"));
+        otherNode.load();
+        int remote = otherNode.intern("Remote");
+        states.set(handle.uuid(), (short) ((remote + 1) << 8));
+
+        assertEquals(BodyTypeService.ApplyResult.NOT_LOADED, onWorld(handle));
+        await(() -> "Remote".equals(handle.body()), "applied again once re-read");
+    }
+
+    private void start() throws IOException {
+        HBTConfig config = HBTConfig.load(dir.resolve("config.properties"));
+        HBTMetrics metrics = new HBTMetrics();
+        states = new PlayerStateCache(dir, config, metrics);
+        states.open();
+        ids = new BodyIdTable(dir.resolve("body_ids.txt"));
+        ids.load();
+        BodyTypeCatalog catalog = BodyTypeCatalog.parse(BodyTypeCatalogTest.bundled(), ids);
+        service = new BodyTypeService(states, ids, catalog, BodyTypeService.BODY_BUST, new SkinCache(16, SkinAccessor.constructorArgs()), metrics);
+    }
+
+    private StandInPlayerHandle join(String body) {
+        return join(UUID.randomUUID(), body);
+    }
+
+    private StandInPlayerHandle join(UUID uuid, String body) {
+        StandInPlayerHandle handle = new StandInPlayerHandle(uuid, "player", StandInPlayer.withOutfit(0, body), world);
+        states.playerJoined(uuid);
+        states.prefetch(uuid).join();
+        return handle;
+    }
+
+    private BodyTypeService.ApplyResult onWorld(StandInPlayerHandle handle) throws Exception {
+        return world.submit(() -> service.apply(handle)).get(10, TimeUnit.SECONDS);
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, what);
+            Thread.sleep(5);
+        }
+    }
+}
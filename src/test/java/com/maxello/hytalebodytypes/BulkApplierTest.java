@@ -0,0 +1,124 @@
+package com.maxello.hytalebodytypes;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@code /hbt applyall} against stand-in worlds, including one that takes its batch and never runs it.
+ */
+class BulkApplierTest {
+
+    @TempDir
+    Path dir;
+
+    private PlayerStateCache states;
+    private BodyTypeService service;
+    private final List<StandInWorld> worlds = new ArrayList<>();
+    private final List<String> progress = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        HBTConfig config = HBTConfig.load(dir.resolve("config.properties"));
+        HBTMetrics metrics = new HBTMetrics();
+        states = new PlayerStateCache(dir, config, metrics);
+        states.open();
+        BodyIdTable ids = new BodyIdTable(dir.resolve("body_ids.txt"));
+        ids.load();
+        BodyTypeCatalog catalog = BodyTypeCatalog.parse(BodyTypeCatalogTest.bundled(), ids);
+        service = new BodyTypeService(states, ids, catalog, BodyTypeService.BODY_BUST, new SkinCache(16, SkinAccessor.constructorArgs()), metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        worlds.forEach(StandInWorld::close);
+        states.close();
+    }
+
+    @Test
+    void appliesEveryWorld() throws Exception {
+        List<StandInPlayerHandle> players = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+            StandInWorld world = world();
+            for (int i = 0; i < 5; i++) {
+                players.add(joinEnabled(world));
+            }
+        }
+        BulkApplier bulk = new BulkApplier(service, () -> worlds, 3, 2000, 5, 1000, 1000);
+        try {
+            assertTrue(bulk.start(progress::add));
+            awaitEnd(bulk, "run finished");
+        } finally {
+            bulk.close();
+        }
+
+        players.forEach(p -> assertEquals(BodyTypeService.BODY_BUST, p.body()));
+        assertTrue(last().startsWith("Bulk apply done: 10/10 players (10 applied"), last());
+    }
+
+    @Test
+    void worldThatNeverRunsItsBatchDoesNotHoldTheRun() throws Exception {
+        StandInPlayerHandle served = joinEnabled(world());
+        StandInWorld dropping = world();
+        joinEnabled(dropping);
+        dropping.dropping = true;
+
+        BulkApplier bulk = new BulkApplier(service, () -> worlds, 20, 2000, 5, 1000, 100);
+        try {
+            assertTrue(bulk.start(progress::add));
+            awaitEnd(bulk, "run finished without the dropping world");
+            assertTrue(last().startsWith("Bulk apply done: 1/1 players (1 applied"), last());
+            assertTrue(last().endsWith(", 1 world batches never ran"), last());
+            assertEquals(BodyTypeService.BODY_BUST, served.body());
+
+            // not stuck at "already running"
+            assertTrue(bulk.start(progress::add));
+            bulk.cancel();
+            awaitEnd(bulk, "second run stopped");
+            assertTrue(last().startsWith("Bulk apply cancelled: "), last());
+        } finally {
+            bulk.close();
+        }
+        assertNull(bulk.status());
+    }
+
+    // The final line is sent just after the run is cleared
+    private void awaitEnd(BulkApplier bulk, String what) throws InterruptedException {
+        int before = ends();
+        JoinApplyQueueTest.await(() -> bulk.status() == null && ends() > before, what);
+    }
+
+    private int ends() {
+        return (int) progress.stream().filter(line -> line.startsWith("Bulk apply done") || line.startsWith("Bulk apply cancelled")).count();
+    }
+
+    private String last() {
+        return progress.get(progress.size() - 1);
+    }
+
+    private StandInWorld world() {
+        StandInWorld world = new StandInWorld();
+        worlds.add(world);
+        return world;
+    }
+
+    private StandInPlayerHandle joinEnabled(StandInWorld world) {
+        StandInPlayerHandle handle = new StandInPlayerHandle(UUID.randomUUID(), "online", StandInPlayer.withOutfit(0), world);
+        world.players.add(handle);
+        states.playerJoined(handle.uuid());
+        states.prefetch(handle.uuid()).join();
+        service.setEnabled(handle.uuid(), true);
+        return handle;
+    }
+}
@@ -0,0 +1,124 @@
+package com.maxello.hytalebodytypes;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The join queue against stand-in worlds: batches per world, a stalled world holding back only its
+ * own players, and timeouts / refused batches counted apart from skips.
+ */
+class JoinApplyQueueTest {
+
+    @TempDir
+    Path dir;
+
+    private PlayerStateCache states;
+    private BodyTypeService service;
+    private JoinApplyQueue queue;
+    private final List<StandInWorld> worlds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        HBTConfig config = HBTConfig.load(dir.resolve("config.properties"));
+        HBTMetrics metrics = new HBTMetrics();
+        states = new PlayerStateCache(dir, config, metrics);
+        states.open();
+        BodyIdTable ids = new BodyIdTable(dir.resolve("body_ids.txt"));
+        ids.load();
+        BodyTypeCatalog catalog = BodyTypeCatalog.parse(BodyTypeCatalogTest.bundled(), ids);
+        service = new BodyTypeService(states, ids, catalog, BodyTypeService.BODY_BUST, new SkinCache(16, SkinAccessor.constructorArgs()), metrics);
+        queue = new JoinApplyQueue(service, metrics, 64, 20, 5, 200);
+    }
+
+    @AfterEach
+    void tearDown() {
+        queue.close();
+        worlds.forEach(StandInWorld::close);
+        states.close();
+    }
+
+    @Test
+    void appliesPlayersOnTheirWorld() throws Exception {
+        List<StandInPlayerHandle> players = new ArrayList<>();
+        for (StandInWorld world : List.of(world(), world())) {
+            for (int i = 0; i < 4; i++) {
+                players.add(joinEnabled(world));
+            }
+        }
+        players.forEach(queue::enqueue);
+
+        await(() -> queue.applied() == players.size(), "every player applied");
+        players.forEach(p -> assertEquals(BodyTypeService.BODY_BUST, p.body()));
+        assertEquals(0, queue.skipped() + queue.timedOut() + queue.failed());
+    }
+
+    @Test
+    void stalledWorldHoldsBackOnlyItsOwnPlayers() throws Exception {
+        StandInWorld stalled = world();
+        stalled.dropping = true;
+        queue.enqueue(joinEnabled(stalled));
+        await(() -> queue.inFlight() == 1, "batch posted to the stalled world");
+
+        StandInPlayerHandle other = joinEnabled(world());
+        queue.enqueue(other);
+        await(() -> queue.applied() == 1, "the other world's player applied");
+        assertEquals(BodyTypeService.BODY_BUST, other.body());
+        assertEquals(1, queue.inFlight());
+    }
+
+    @Test
+    void countsTimeoutsAndRefusedBatchesApartFromSkips() throws Exception {
+        StandInPlayerHandle nowhere = joinEnabled(world());
+        nowhere.inWorld = null;
+        queue.enqueue(nowhere);
+
+        StandInWorld refusing = world();
+        refusing.refusing = true;
+        queue.enqueue(joinEnabled(refusing));
+
+        // left before their turn
+        StandInPlayerHandle left = joinEnabled(world());
+        states.playerLeft(left.uuid());
+        queue.enqueue(left);
+
+        await(() -> queue.timedOut() + queue.failed() + queue.skipped() == 3, "every player accounted for");
+        assertEquals(1, queue.timedOut());
+        assertEquals(1, queue.failed());
+        assertEquals(1, queue.skipped());
+        assertEquals(0, queue.applied());
+    }
+
+    private StandInWorld world() {
+        StandInWorld world = new StandInWorld();
+        worlds.add(world);
+        return world;
+    }
+
+    private StandInPlayerHandle joinEnabled(StandInWorld world) {
+        StandInPlayerHandle handle = new StandInPlayerHandle(UUID.randomUUID(), "joiner", StandInPlayer.withOutfit(0), world);
+        states.playerJoined(handle.uuid());
+        states.prefetch(handle.uuid()).join();
+        service.setEnabled(handle.uuid(), true);
+        return handle;
+    }
+
+    static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, what);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.maxello.hytalebodytypes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Headless load test: virtual players issuing {@code /bodytype} modes and page clicks concurrently
+ * through {@link BodyTypeActions}, the mailbox, the real state cache, persister and apply path, with
+ * {@link StandInPlayer}s owned by single-threaded stand-in worlds.
+ * <p>
+ * Each virtual player runs on its own virtual thread and keeps a model of what its actions should
+ * leave behind; at the end every player is checked in memory, on their skin and after reopening the
+ * state from disk. Scale with {@code -PsimPlayers}, {@code -PsimOps} and {@code -PsimThinkMicros}.
+ */
+class LoadSimulationTest {
+
+    private static final String[] MODES = {"on", "off", "toggle", "next", "apply", "status", "list", "HBT_Bust", "Muscular", "Default"};
+    private static final String[] BUTTONS = {"Enable", "Disable", "Toggle", "Cycle"};
+    private static final int WORLDS = 4;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void virtualPlayersEndConsistent() throws Exception {
+        int players = Integer.getInteger("simPlayers", 500);
+        int opsPerPlayer = Integer.getInteger("simOps", 40);
+        long thinkMicros = Long.getLong("simThinkMicros", 100);
+
+        HBTConfig config = HBTConfig.load(dir.resolve("config.properties"));
+        HBTMetrics metrics = new HBTMetrics();
+        PlayerStateCache states = new PlayerStateCache(dir, config, metrics);
+        states.open();
+        StatePersister persister = StatePersister.fromConfig(states::flush, config, metrics);
+        states.onChange(persister::markDirty);
+        persister.start();
+
+        BodyIdTable ids = new BodyIdTable(dir.resolve("body_ids.txt"));
+        ids.load();
+        BodyTypeCatalog catalog = BodyTypeCatalog.parse(BodyTypeCatalogTest.bundled(), ids);
+        SkinCache skinCache = new SkinCache(1024, SkinAccessor.constructorArgs());
+        BodyTypeService service = new BodyTypeService(states, ids, catalog, BodyTypeService.BODY_BUST, skinCache, metrics);
+        PlayerActionMailbox mailbox = new PlayerActionMailbox(service);
+        BodyTypeActions actions = new BodyTypeActions(service, mailbox);
+        byte defaultChoice = catalog.byId(BodyTypeService.BODY_BUST).choice();
+
+        List<ExecutorService> worlds = new ArrayList<>();
+        for (int w = 0; w < WORLDS; w++) {
+            worlds.add(Executors.newSingleThreadExecutor(Thread.ofPlatform().name("sim-world-" + w).factory()));
+        }
+        StandInPlayerHandle[] handles = new StandInPlayerHandle[players];
+        for (int i = 0; i < players; i++) {
+            handles[i] = new StandInPlayerHandle(UUID.randomUUID(), "sim-" + i, StandInPlayer.withOutfit(i % 32), worlds.get(i % WORLDS));
+            states.playerJoined(handles[i].uuid());
+        }
+
+        byte[] expected = new byte[players];
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            int p = i;
+            threads.add(Thread.ofVirtual().name("sim-player-" + i).start(() -> {
+                SplittableRandom random = new SplittableRandom(p);
+                StandInPlayerHandle handle = handles[p];
+                byte choice = BodyTypeCatalog.NONE;
+                for (int op = 0; op < opsPerPlayer; op++) {
+                    if (random.nextBoolean()) {
+                        String mode = MODES[random.nextInt(MODES.length)];
+                        actions.runMode(mode, handle);
+                        choice = switch (mode) {
+                            case "on" -> defaultChoice;
+                            case "off" -> BodyTypeCatalog.NONE;
+                            case "toggle" -> (choice == BodyTypeCatalog.NONE) ? defaultChoice : BodyTypeCatalog.NONE;
+                            case "next" -> catalog.next(choice);
+                            case "apply", "status", "list" -> choice;
+                            default -> catalog.byId(mode).choice();
+                        };
+                    } else {
+                        String button = BUTTONS[random.nextInt(BUTTONS.length)];
+                        assertTrue(actions.runPageAction(button, handle, () -> {
+                        }));
+                        choice = switch (button) {
+                            case "Enable" -> defaultChoice;
+                            case "Disable" -> BodyTypeCatalog.NONE;
+                            case "Toggle" -> (choice == BodyTypeCatalog.NONE) ? defaultChoice : BodyTypeCatalog.NONE;
+                            default -> catalog.next(choice);
+                        };
+                    }
+                    if (thinkMicros > 0) {
+                        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(random.nextLong(thinkMicros * 2)));
+                    }
+                }
+                expected[p] = choice;
+            }));
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        awaitIdle(mailbox, worlds);
+        long elapsed = System.nanoTime() - start;
+
+        int memoryMismatches = 0;
+        int skinMismatches = 0;
+        short[] stored = new short[players];
+        for (int i = 0; i < players; i++) {
+            UUID uuid = handles[i].uuid();
+            stored[i] = states.get(uuid);
+            if (service.choice(uuid) != expected[i]) memoryMismatches++;
+            String desired = service.desiredBodyId(uuid);
+            if (!(desired != null ? desired : BodyTypeService.BODY_DEFAULT).equals(handles[i].body())) skinMismatches++;
+            assertTrue(handles[i].messages.stream().noneMatch(m -> m.startsWith("Use:")), handles[i].messages::toString);
+        }
+
+        persister.close();
+        states.close();
+        worlds.forEach(ExecutorService::shutdownNow);
+
+        PlayerStateCache reopened = new PlayerStateCache(dir, config, new HBTMetrics());
+        reopened.open();
+        int diskMismatches = 0;
+        for (int i = 0; i < players; i++) {
+            reopened.prefetch(handles[i].uuid()).join();
+            if (reopened.get(handles[i].uuid()) != stored[i]) diskMismatches++;
+        }
+        reopened.close();
+
+        long failed = 0;
+        for (HBTMetrics.Failure f : HBTMetrics.Failure.values()) {
+            failed += metrics.failures(f);
+        }
+        long ops = (long) players * opsPerPlayer;
+        metrics.gauge("sim.players", () -> players);
+        metrics.gauge("sim.ops", () -> ops);
+        metrics.gauge("sim.elapsedMs", () -> TimeUnit.NANOSECONDS.toMillis(elapsed));
+        metrics.gauge("sim.opsPerSec", () -> (long) (ops / (elapsed / 1e9)));
+        metrics.gauge("actions.submitted", mailbox::submittedActions);
+        metrics.gauge("actions.coalesced", mailbox::coalescedActions);
+        metrics.gauge("actions.applies", mailbox::applies);
+        metrics.gauge("persist.writes", persister::writes);
+        metrics.gauge("persist.coalesced", persister::coalescedSaves);
+        metrics.gauge("skinCache.hits", skinCache::hits);
+        metrics.gauge("skinCache.misses", skinCache::misses);
+        // -DsimReport=<file>; the build points it at build/reports/load-simulation.txt
+        String report = System.getProperty("simReport");
+        if (report != null) {
+            Path file = Path.of(report);
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.write(file, metrics.report(), StandardCharsets.UTF_8);
+        }
+
+        assertEquals(0, memoryMismatches, "state in memory");
+        assertEquals(0, skinMismatches, "body on the skin");
+        assertEquals(0, diskMismatches, "state after reopening");
+        assertEquals(0, failed, "failed applies");
+
+        // Loose: a stand-in apply is a reflective skin rebuild, tens of microseconds
+        long p50 = metrics.apply.percentileNanos(50);
+        long p99 = metrics.apply.percentileNanos(99);
+        assertTrue(metrics.apply.count() > 0, "applies recorded");
+        assertTrue(p50 <= p99, "apply p50 " + p50 + " ns > p99 " + p99 + " ns");
+        assertTrue(p99 < TimeUnit.MILLISECONDS.toNanos(100), "apply p99 " + TimeUnit.NANOSECONDS.toMicros(p99) + " us");
+    }
+
+    /**
+     * Waits until no apply is queued, then until every world ran what was posted before.
+     */
+    static void awaitIdle(PlayerActionMailbox mailbox, List<ExecutorService> worlds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!mailbox.isIdle()) {
+            assertTrue(System.nanoTime() < deadline, "mailbox did not drain");
+            Thread.sleep(5);
+        }
+        for (ExecutorService world : worlds) {
+            world.submit(() -> {
+            }).get(30, TimeUnit.SECONDS);
+        }
+    }
+}
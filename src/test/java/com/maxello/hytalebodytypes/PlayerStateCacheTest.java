@@ -0,0 +1,87 @@
+package com.maxello.hytalebodytypes;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Residency: players who leave are dropped whether or not anything was changed, unsaved ones once
+ * their change is written, and lookups past {@code state.maxResident} are trimmed back.
+ */
+class PlayerStateCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private PlayerStateCache states;
+
+    @AfterEach
+    void tearDown() {
+        states.close();
+    }
+
+    @Test
+    void leavingWithoutChangesDropsTheEntry() throws IOException {
+        states = open(5000);
+        UUID uuid = UUID.randomUUID();
+        states.playerJoined(uuid);
+        states.prefetch(uuid).join();
+        assertEquals(1, states.residentCount());
+
+        states.playerLeft(uuid);
+        assertEquals(0, states.residentCount());
+    }
+
+    @Test
+    void leavingWithUnsavedChangeWaitsForTheFlush() throws IOException {
+        states = open(5000);
+        UUID uuid = UUID.randomUUID();
+        states.playerJoined(uuid);
+        states.prefetch(uuid).join();
+        states.set(uuid, (short) 1);
+
+        states.playerLeft(uuid);
+        assertEquals(1, states.residentCount());
+
+        states.flush();
+        assertEquals(0, states.residentCount());
+        states.prefetch(uuid).join();
+        assertEquals(1, states.get(uuid));
+    }
+
+    @Test
+    void lookupsPastTheBoundAreTrimmed() throws IOException {
+        states = open(4);
+        for (int i = 0; i < 10; i++) {
+            states.prefetch(UUID.randomUUID()).join();
+        }
+        // the loader trims right after completing the lookup
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (states.residentCount() > 4 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(4, states.residentCount());
+    }
+
+    private PlayerStateCache open(int maxResident) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("state.maxResident", Integer.toString(maxResident));
+        try (Writer w = Files.newBufferedWriter(dir.resolve("config.properties"))) {
+            props.store(w, null);
+        }
+
+        PlayerStateCache cache = new PlayerStateCache(dir, HBTConfig.load(dir.resolve("config.properties")), new HBTMetrics());
+        cache.open();
+        return cache;
+    }
+}
@@ -0,0 +1,180 @@
+package com.maxello.hytalebodytypes;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two nodes, each with its own data dir and {@link PlayerStateCache}, sharing one
+ * {@code state.sharedDir}: what one node writes the other tails, across compactions, and concurrent
+ * writers end agreeing with each other and with the disk.
+ */
+class SharedPlayerStateTest {
+
+    private static final long COMPACT_AFTER_BYTES = 128;
+
+    @TempDir
+    Path dir;
+
+    private Path shared;
+    private PlayerStateCache node1;
+    private PlayerStateCache node2;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        shared = dir.resolve("shared");
+        node1 = open("node1");
+        node2 = open("node2");
+    }
+
+    @AfterEach
+    void tearDown() {
+        node1.close();
+        node2.close();
+    }
+
+    @Test
+    void nodeTailsTheOthersWrites() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        join(uuid, node1, node2);
+
+        node1.set(uuid, (short) 3);
+        node1.flush();
+        await(() -> node2.get(uuid) == 3, "node2 picks up node1's write");
+
+        node2.set(uuid, (short) 4);
+        node2.flush();
+        await(() -> node1.get(uuid) == 4, "node1 picks up node2's write");
+        assertTrue(node1.remoteUpdates() >= 1 && node2.remoteUpdates() >= 1);
+    }
+
+    @Test
+    void tailingSurvivesCompaction() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        join(uuid, node1, node2);
+        Path journal = shared.resolve(ShardedStateStorage.shardName(ShardedStateStorage.index(uuid)) + ".journal");
+
+        // Far past compactAfterBytes, so the shard is folded into a new snapshot several times
+        for (int i = 1; i <= 40; i++) {
+            node1.set(uuid, (short) i);
+            node1.flush();
+        }
+        assertTrue(Files.size(journal) < COMPACT_AFTER_BYTES, "journal was compacted");
+        await(() -> node2.get(uuid) == 40, "node2 replays the compacted shard");
+
+        node2.set(uuid, (short) 41);
+        node2.flush();
+        await(() -> node1.get(uuid) == 41, "node1 tails node2 after the compaction");
+    }
+
+    @Test
+    void turningOffSurvivesCompaction() throws Exception {
+        // Compacts on every flush; off is stored as no entry, so only the replay can tell
+        PlayerStateCache n1 = open("compacting1", 1);
+        PlayerStateCache n2 = open("compacting2", 1);
+        try {
+            UUID uuid = UUID.randomUUID();
+            join(uuid, n1, n2);
+
+            n1.set(uuid, (short) 1);
+            n1.flush();
+            await(() -> n2.get(uuid) == 1, "node2 picks up the 1");
+
+            n1.set(uuid, PlayerStateStore.NONE);
+            n1.flush();
+            await(() -> n2.get(uuid) == PlayerStateStore.NONE, "node2 picks up the 0 folded into the snapshot");
+        } finally {
+            n1.close();
+            n2.close();
+        }
+    }
+
+    @Test
+    void concurrentWritersConverge() throws Exception {
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            UUID uuid = UUID.randomUUID();
+            players.add(uuid);
+            join(uuid, node1, node2);
+        }
+
+        Thread w1 = Thread.ofPlatform().start(() -> write(node1, players, 1));
+        Thread w2 = Thread.ofPlatform().start(() -> write(node2, players, 2));
+        w1.join();
+        w2.join();
+
+        await(() -> players.stream().allMatch(uuid -> node1.get(uuid) == node2.get(uuid)), "both nodes agree");
+
+        PlayerStateCache reopened = open("node3");
+        try {
+            for (UUID uuid : players) {
+                reopened.prefetch(uuid).join();
+                assertEquals(node1.get(uuid), reopened.get(uuid), "last write on disk");
+            }
+        } finally {
+            reopened.close();
+        }
+    }
+
+    // Every node writes every player a few times, flushing in between like the persister would
+    private static void write(PlayerStateCache node, List<UUID> players, int seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int round = 0; round < 20; round++) {
+            for (int n = 0; n < 16; n++) {
+                node.set(players.get(random.nextInt(players.size())), (short) (seed << 8 | random.nextInt(1, 256)));
+            }
+            node.flush();
+        }
+    }
+
+    private PlayerStateCache open(String node) throws IOException {
+        return open(node, COMPACT_AFTER_BYTES);
+    }
+
+    private PlayerStateCache open(String node, long compactAfterBytes) throws IOException {
+        Path dataDir = Files.createDirectories(dir.resolve(node));
+        Properties props = new Properties();
+        props.setProperty("state.sharedDir", shared.toString());
+        props.setProperty("state.syncIntervalMs", "10");
+        props.setProperty("journal.compactAfterBytes", Long.toString(compactAfterBytes));
+        try (Writer w = Files.newBufferedWriter(dataDir.resolve("config.properties"))) {
+            props.store(w, null);
+        }
+
+        PlayerStateCache cache = new PlayerStateCache(dataDir, HBTConfig.load(dataDir.resolve("config.properties")), new HBTMetrics());
+        cache.open();
+        return cache;
+    }
+
+    // Changes and remote updates only apply to resident players
+    private static void join(UUID uuid, PlayerStateCache... nodes) {
+        for (PlayerStateCache node : nodes) {
+            node.playerJoined(uuid);
+            node.prefetch(uuid).join();
+        }
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, what);
+            Thread.sleep(5);
+        }
+    }
+}
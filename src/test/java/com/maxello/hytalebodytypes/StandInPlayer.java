@@ -0,0 +1,169 @@
+package com.maxello.hytalebodytypes;
+
+/**
+ * Stand-in with the same shapes the plugin resolves on the real Player / PlayerSkin / PlayerSkinPartId,
+ * so the apply path can be tested and benchmarked without a server.
+ */
+public final class StandInPlayer {
+
+    private PlayerSkin skin;
+
+    public StandInPlayer(PlayerSkin skin) {
+        this.skin = skin;
+    }
+
+    public PlayerSkin getPlayerSkin() {
+        return skin;
+    }
+
+    public void setPlayerSkin(PlayerSkin skin) {
+        this.skin = skin;
+    }
+
+    static StandInPlayer withOutfit(int outfit) {
+        return withOutfit(outfit, "Default");
+    }
+
+    static StandInPlayer withOutfit(int outfit, String body) {
+        String v = Integer.toString(outfit);
+        return new StandInPlayer(new PlayerSkin(body, "Underwear_" + v + ".Blue", "Face_1", "Ears_1", "Mouth_1", "Eyes_" + v + ".Green", null, "Haircut_" + v + ".Brown.Short", "Eyebrows_1.Brown", "Pants_" + v + ".Grey", null, "Shirt_" + v + ".White", null, "Boots_1.Brown", null, null, null, null, null, null));
+    }
+
+    public static final class PlayerSkinPartId {
+        private final String assetId;
+        private final String textureId;
+        private final String variantId;
+
+        PlayerSkinPartId(String assetId, String textureId, String variantId) {
+            this.assetId = assetId;
+            this.textureId = textureId;
+            this.variantId = variantId;
+        }
+
+        static PlayerSkinPartId parse(String s) {
+            if (s == null) return null;
+            String[] p = s.split("\\.");
+            return new PlayerSkinPartId(p[0], p.length > 1 ? p[1] : null, p.length > 2 ? p[2] : null);
+        }
+
+        public String getAssetId() {
+            return assetId;
+        }
+
+        public String getTextureId() {
+            return textureId;
+        }
+
+        public String getVariantId() {
+            return variantId;
+        }
+    }
+
+    public static final class PlayerSkin {
+        private final PlayerSkinPartId bodyCharacteristic, underwear, eyes, facialHair, haircut, eyebrows, pants, overpants, undertop, overtop, shoes, headAccessory, faceAccessory, earAccessory, skinFeature, gloves, cape;
+        private final String face, ears, mouth;
+
+        public PlayerSkin(String bodyCharacteristic, String underwear, String face, String ears, String mouth, String eyes, String facialHair, String haircut, String eyebrows, String pants, String overpants, String undertop, String overtop, String shoes, String headAccessory, String faceAccessory, String earAccessory, String skinFeature, String gloves, String cape) {
+            this.bodyCharacteristic = PlayerSkinPartId.parse(bodyCharacteristic);
+            this.underwear = PlayerSkinPartId.parse(underwear);
+            this.face = face;
+            this.ears = ears;
+            this.mouth = mouth;
+            this.eyes = PlayerSkinPartId.parse(eyes);
+            this.facialHair = PlayerSkinPartId.parse(facialHair);
+            this.haircut = PlayerSkinPartId.parse(haircut);
+            this.eyebrows = PlayerSkinPartId.parse(eyebrows);
+            this.pants = PlayerSkinPartId.parse(pants);
+            this.overpants = PlayerSkinPartId.parse(overpants);
+            this.undertop = PlayerSkinPartId.parse(undertop);
+            this.overtop = PlayerSkinPartId.parse(overtop);
+            this.shoes = PlayerSkinPartId.parse(shoes);
+            this.headAccessory = PlayerSkinPartId.parse(headAccessory);
+            this.faceAccessory = PlayerSkinPartId.parse(faceAccessory);
+            this.earAccessory = PlayerSkinPartId.parse(earAccessory);
+            this.skinFeature = PlayerSkinPartId.parse(skinFeature);
+            this.gloves = PlayerSkinPartId.parse(gloves);
+            this.cape = PlayerSkinPartId.parse(cape);
+        }
+
+        public PlayerSkinPartId getBodyCharacteristic() {
+            return bodyCharacteristic;
+        }
+
+        public PlayerSkinPartId getUnderwear() {
+            return underwear;
+        }
+
+        public String getFace() {
+            return face;
+        }
+
+        public String getEars() {
+            return ears;
+        }
+
+        public String getMouth() {
+            return mouth;
+        }
+
+        public PlayerSkinPartId getEyes() {
+            return eyes;
+        }
+
+        public PlayerSkinPartId getFacialHair() {
+            return facialHair;
+        }
+
+        public PlayerSkinPartId getHaircut() {
+            return haircut;
+        }
+
+        public PlayerSkinPartId getEyebrows() {
+            return eyebrows;
+        }
+
+        public PlayerSkinPartId getPants() {
+            return pants;
+        }
+
+        public PlayerSkinPartId getOverpants() {
+            return overpants;
+        }
+
+        public PlayerSkinPartId getUndertop() {
+            return undertop;
+        }
+
+        public PlayerSkinPartId getOvertop() {
+            return overtop;
+        }
+
+        public PlayerSkinPartId getShoes() {
+            return shoes;
+        }
+
+        public PlayerSkinPartId getHeadAccessory() {
+            return headAccessory;
+        }
+
+        public PlayerSkinPartId getFaceAccessory() {
+            return faceAccessory;
+        }
+
+        public PlayerSkinPartId getEarAccessory() {
+            return earAccessory;
+        }
+
+        public PlayerSkinPartId getSkinFeature() {
+            return skinFeature;
+        }
+
+        public PlayerSkinPartId getGloves() {
+            return gloves;
+        }
+
+        public PlayerSkinPartId getCape() {
+            return cape;
+        }
+    }
+}
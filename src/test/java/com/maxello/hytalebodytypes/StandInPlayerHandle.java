@@ -0,0 +1,74 @@
+package com.maxello.hytalebodytypes;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Stand-in for the server's PlayerRef / Ref / Store: a {@link StandInPlayer} owned by a "world"
+ * executor, keeping the messages it was sent.
+ */
+final class StandInPlayerHandle implements PlayerHandle, JoinApplyQueue.Joiner {
+
+    final StandInPlayer player;
+    final List<String> messages = new CopyOnWriteArrayList<>();
+    private final UUID uuid;
+    private final String username;
+    private final Executor world;
+    volatile boolean valid = true;
+    // The world the join queue sees it in; null while it isn't in one
+    volatile WorldHandle inWorld;
+
+    StandInPlayerHandle(UUID uuid, String username, StandInPlayer player, Executor world) {
+        this.uuid = uuid;
+        this.username = username;
+        this.player = player;
+        this.world = world;
+        this.inWorld = (world instanceof WorldHandle w) ? w : null;
+    }
+
+    @Override
+    public UUID uuid() {
+        return uuid;
+    }
+
+    @Override
+    public String username() {
+        return username;
+    }
+
+    @Override
+    public boolean isValid() {
+        return valid;
+    }
+
+    @Override
+    public Object player() {
+        return player;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        world.execute(task);
+    }
+
+    @Override
+    public WorldHandle world() {
+        return inWorld;
+    }
+
+    @Override
+    public PlayerHandle handle() {
+        return valid ? this : null;
+    }
+
+    @Override
+    public void sendMessage(String text, String color) {
+        messages.add(text);
+    }
+
+    String body() {
+        return player.getPlayerSkin().getBodyCharacteristic().getAssetId();
+    }
+}
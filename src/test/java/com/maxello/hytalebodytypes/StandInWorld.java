@@ -0,0 +1,35 @@
+package com.maxello.hytalebodytypes;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Stand-in for the server's World: a single "world thread" that can be told to refuse tasks (a
+ * world shutting down) or to accept them and never run them (a world that stalls or drops them).
+ */
+final class StandInWorld implements WorldHandle, Executor {
+
+    final ExecutorService thread = Executors.newSingleThreadExecutor();
+    final List<PlayerHandle> players = new CopyOnWriteArrayList<>();
+    volatile boolean refusing;
+    volatile boolean dropping;
+
+    @Override
+    public void execute(Runnable task) {
+        if (refusing) throw new RejectedExecutionException("world is shutting down");
+        if (!dropping) thread.execute(task);
+    }
+
+    @Override
+    public List<PlayerHandle> players() {
+        return List.copyOf(players);
+    }
+
+    void close() {
+        thread.shutdownNow();
+    }
+}
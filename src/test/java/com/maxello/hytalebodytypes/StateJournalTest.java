@@ -0,0 +1,261 @@
+package com.maxello.hytalebodytypes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StateJournalTest {
+
+    private static final int SNAPSHOT_MAGIC = 0x48425453;
+    private static final int JOURNAL_MAGIC = 0x4842544A;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsVersion1Files() throws IOException {
+        // one state byte per record
+        Files.write(snapshot(), legacy(SNAPSHOT_MAGIC, 1, v1(1, 1, 1), v1(2, 2, 1)));
+        Files.write(journal(), legacy(JOURNAL_MAGIC, 1, v1(2, 2, 0), v1(3, 3, 1)));
+
+        assertEquals(Map.of(key(1, 1), (short) 1, key(3, 3), (short) 1), read(open()));
+    }
+
+    @Test
+    void readsVersion2Files() throws IOException {
+        Files.write(snapshot(), legacy(SNAPSHOT_MAGIC, 2, v2(1, 1, 0x0203), v2(2, 2, 1)));
+        Files.write(journal(), legacy(JOURNAL_MAGIC, 2, v2(1, 1, 0x0104)));
+
+        assertEquals(Map.of(key(1, 1), (short) 0x0104, key(2, 2), (short) 1), read(open()));
+    }
+
+    @Test
+    void ignoresTornLegacyRecord() throws IOException {
+        byte[] journal = legacy(JOURNAL_MAGIC, 1, v1(5, 5, 1), v1(6, 6, 1));
+        Files.write(journal(), Arrays.copyOf(journal, journal.length - 4));
+
+        assertEquals(Map.of(key(5, 5), (short) 1), read(open()));
+    }
+
+    @Test
+    void appendingUpgradesLegacyFiles() throws IOException {
+        Files.write(snapshot(), legacy(SNAPSHOT_MAGIC, 1, v1(1, 1, 1)));
+        Files.write(journal(), legacy(JOURNAL_MAGIC, 1, v1(2, 2, 1)));
+
+        StateJournal journal = open();
+        PlayerStateStore state = new StripedStateStore();
+        state.put(new UUID(3, 3), (short) 0x0501);
+        journal.append(List.of(new UUID(3, 3)), state);
+
+        Map<String, Short> expected = Map.of(key(1, 1), (short) 1, key(2, 2), (short) 1, key(3, 3), (short) 0x0501);
+        assertEquals(expected, read(open()));
+        assertEquals(3, ByteBuffer.wrap(Files.readAllBytes(snapshot())).getInt(4));
+        assertEquals(3, ByteBuffer.wrap(Files.readAllBytes(journal())).getInt(4));
+    }
+
+    @Test
+    void recoversFromChecksumMismatch() throws IOException {
+        Map<String, Short> good = twoGenerations();
+        byte[] bytes = Files.readAllBytes(snapshot());
+        bytes[30] ^= 1;
+        Files.write(snapshot(), bytes);
+
+        StateJournal journal = open();
+        assertEquals(good, read(journal));
+        assertTrue(journal.needsCompaction());
+
+        // the next compaction sets the broken snapshot aside and writes a good one
+        journal.compact();
+        assertTrue(Files.exists(dir.resolve("00.snapshot.corrupt")));
+        StateJournal reopened = open();
+        assertEquals(good, read(reopened));
+        assertFalse(reopened.needsCompaction());
+    }
+
+    @Test
+    void recoversFromTruncatedSnapshot() throws IOException {
+        Map<String, Short> good = twoGenerations();
+        byte[] bytes = Files.readAllBytes(snapshot());
+        Files.write(snapshot(), Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertEquals(good, read(open()));
+    }
+
+    @Test
+    void recoversWhenCompactionStoppedBeforeNewSnapshot() throws IOException {
+        Map<String, Short> good = twoGenerations();
+        // the rotation happened, the new snapshot never replaced the tmp file
+        Files.move(snapshot(), dir.resolve("00.snapshot.prev"), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(journal(), dir.resolve("00.journal.prev"), StandardCopyOption.REPLACE_EXISTING);
+        Files.write(dir.resolve("00.snapshot.tmp"), new byte[]{1, 2, 3});
+
+        StateJournal journal = open();
+        assertEquals(good, read(journal));
+
+        PlayerStateStore state = new StripedStateStore();
+        state.put(new UUID(9, 9), (short) 2);
+        journal.append(List.of(new UUID(9, 9)), state);
+        Map<String, Short> expected = new TreeMap<>(good);
+        expected.put(key(9, 9), (short) 2);
+        assertEquals(expected, read(open()));
+    }
+
+    @Test
+    void compactionAfterCutShortOneKeepsTheFallback() throws IOException {
+        Map<String, Short> good = twoGenerations();
+        Files.move(snapshot(), dir.resolve("00.snapshot.prev"), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(journal(), dir.resolve("00.journal.prev"), StandardCopyOption.REPLACE_EXISTING);
+
+        StateJournal journal = open();
+        PlayerStateStore state = new StripedStateStore();
+        state.put(new UUID(9, 9), (short) 2);
+        journal.append(List.of(new UUID(9, 9)), state);
+        journal.load(new StripedStateStore());
+        journal.compact();
+        Map<String, Short> expected = new TreeMap<>(good);
+        expected.put(key(9, 9), (short) 2);
+
+        // the new snapshot breaks: the previous generation still holds every record on top of it
+        byte[] bytes = Files.readAllBytes(snapshot());
+        bytes[30] ^= 1;
+        Files.write(snapshot(), bytes);
+        assertEquals(expected, read(open()));
+    }
+
+    @Test
+    void compactionBetweenTheTwoMovesDropsTheStaleJournal() throws IOException {
+        Map<String, Short> good = twoGenerations();
+        // the snapshot was rotated, its journal not yet: the .prev journal is generation 1's
+        Files.move(snapshot(), dir.resolve("00.snapshot.prev"), StandardCopyOption.REPLACE_EXISTING);
+
+        StateJournal journal = open();
+        assertEquals(good, read(journal));
+        journal.compact();
+
+        Files.write(snapshot(), new byte[]{1});
+        assertEquals(good, read(open()));
+    }
+
+    @Test
+    void upgradedSnapshotFallsBackToVersion2() throws IOException {
+        Files.write(snapshot(), legacy(SNAPSHOT_MAGIC, 2, v2(1, 1, 1), v2(2, 2, 0x0103)));
+        Files.write(journal(), legacy(JOURNAL_MAGIC, 2, v2(1, 1, 0)));
+
+        StateJournal journal = open();
+        PlayerStateStore state = new StripedStateStore();
+        state.put(new UUID(3, 3), (short) 1);
+        journal.append(List.of(new UUID(3, 3)), state);
+        Map<String, Short> good = Map.of(key(2, 2), (short) 0x0103, key(3, 3), (short) 1);
+        assertEquals(good, read(open()));
+
+        // the version 2 files were kept as the previous generation
+        assertEquals(2, ByteBuffer.wrap(Files.readAllBytes(dir.resolve("00.snapshot.prev"))).getInt(4));
+        Files.write(snapshot(), new byte[]{0x48, 0x42});
+        assertEquals(good, read(open()));
+    }
+
+    @Test
+    void failsWhenBothGenerationsAreBroken() throws IOException {
+        twoGenerations();
+        Files.write(snapshot(), new byte[]{1});
+        Files.write(dir.resolve("00.snapshot.prev"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+
+        IOException e = assertThrows(IOException.class, () -> read(open()));
+        assertEquals(1, e.getSuppressed().length);
+    }
+
+    @Test
+    void missingFilesReadAsEmpty() throws IOException {
+        StateJournal journal = open();
+        assertFalse(journal.exists());
+        assertEquals(Map.of(), read(journal));
+    }
+
+    /**
+     * Generation 1 as the previous one, generation 2 with records appended on top.
+     *
+     * @return what a reader should see
+     */
+    private Map<String, Short> twoGenerations() throws IOException {
+        StateJournal journal = open();
+        PlayerStateStore state = new StripedStateStore();
+        for (int i = 1; i <= 4; i++) {
+            state.put(new UUID(i, i), (short) i);
+        }
+        journal.append(List.of(new UUID(1, 1), new UUID(2, 2), new UUID(3, 3), new UUID(4, 4)), state);
+        journal.compact();
+
+        state.put(new UUID(2, 2), PlayerStateStore.NONE);
+        state.put(new UUID(5, 5), (short) 0x0205);
+        journal.append(List.of(new UUID(2, 2), new UUID(5, 5)), state);
+        journal.compact();
+
+        state.put(new UUID(1, 1), (short) 7);
+        journal.append(List.of(new UUID(1, 1)), state);
+        assertTrue(Files.exists(dir.resolve("00.snapshot.prev")));
+
+        Map<String, Short> good = Map.of(key(1, 1), (short) 7, key(3, 3), (short) 3, key(4, 4), (short) 4, key(5, 5), (short) 0x0205);
+        assertEquals(good, read(open()));
+        return good;
+    }
+
+    Path snapshot() {
+        return dir.resolve("00.snapshot");
+    }
+
+    Path journal() {
+        return dir.resolve("00.journal");
+    }
+
+    StateJournal open() {
+        return new StateJournal(snapshot(), journal(), 1 << 20);
+    }
+
+    static Map<String, Short> read(StateJournal journal) throws IOException {
+        Map<String, Short> states = new TreeMap<>();
+        journal.replay((msb, lsb, state) -> {
+            if (state == PlayerStateStore.NONE) {
+                states.remove(key(msb, lsb));
+            } else {
+                states.put(key(msb, lsb), state);
+            }
+        });
+        return states;
+    }
+
+    static String key(long msb, long lsb) {
+        return msb + ":" + lsb;
+    }
+
+    static byte[] legacy(int magic, int version, byte[]... records) {
+        ByteBuffer buf = ByteBuffer.allocate(8 + Arrays.stream(records).mapToInt(r -> r.length).sum());
+        buf.putInt(magic).putInt(version);
+        for (byte[] r : records) {
+            buf.put(r);
+        }
+        return buf.array();
+    }
+
+    static byte[] v1(long msb, long lsb, int state) {
+        return ByteBuffer.allocate(17).putLong(msb).putLong(lsb).put((byte) state).array();
+    }
+
+    static byte[] v2(long msb, long lsb, int state) {
+        return ByteBuffer.allocate(18).putLong(msb).putLong(lsb).putShort((short) state).array();
+    }
+}
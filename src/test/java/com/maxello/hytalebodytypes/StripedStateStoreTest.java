@@ -0,0 +1,86 @@
+package com.maxello.hytalebodytypes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StripedStateStoreTest {
+
+    private static final int ENTRIES = 1_000_000;
+
+    @Test
+    void putGetUpdateAndRemove() {
+        StripedStateStore store = new StripedStateStore();
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+
+        assertEquals(PlayerStateStore.NONE, store.get(a));
+        store.put(a, (short) 0x0102);
+        store.put(b, (short) 1);
+        assertEquals(0x0102, store.get(a));
+        assertEquals(2, store.size());
+
+        assertEquals(2, store.update(b, s -> s + 1));
+        assertEquals(PlayerStateStore.NONE, store.update(b, s -> PlayerStateStore.NONE));
+        assertEquals(PlayerStateStore.NONE, store.get(b));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void growsPastOneMillionEntries() {
+        StripedStateStore store = new StripedStateStore();
+        long[] keys = keys();
+        for (int i = 0; i < ENTRIES; i++) {
+            store.put(keys[2 * i], keys[2 * i + 1], (short) (i % 255 + 1));
+        }
+        assertEquals(ENTRIES, store.size());
+        for (int i = 0; i < ENTRIES; i++) {
+            assertEquals(i % 255 + 1, store.get(keys[2 * i], keys[2 * i + 1]));
+        }
+    }
+
+    /**
+     * The store replaced a {@code ConcurrentHashMap<UUID, Boolean>}. At 1M entries each stripe's table
+     * is just under half full, the worst case for a 0.7 load factor: 18 bytes per slot, ~37 per entry.
+     * Both sides are worked out from the structures, not from heap deltas.
+     */
+    @Test
+    void footprintAtOneMillionEntries() {
+        long[] keys = keys();
+        StripedStateStore store = new StripedStateStore();
+        for (int i = 0; i < ENTRIES; i++) {
+            store.put(keys[2 * i], keys[2 * i + 1], BodyTypeCatalog.STATE_ON);
+        }
+
+        long striped = store.footprintBytes();
+        long map = concurrentHashMapBytes(ENTRIES);
+        assertTrue(striped / ENTRIES <= 40, "striped store: " + striped / ENTRIES + " bytes/entry");
+        assertTrue(striped * 3 < map * 2, "striped " + striped / ENTRIES + " vs map " + map / ENTRIES + " bytes/entry");
+    }
+
+    /**
+     * {@code ConcurrentHashMap<UUID, Boolean>} with compressed oops: a 32-byte node and a 24-byte UUID
+     * per entry (Boolean.TRUE is shared), and a 4-byte slot per bin. Bins double once the map is
+     * three-quarters full.
+     */
+    private static long concurrentHashMapBytes(int entries) {
+        long bins = 16;
+        while (entries > bins * 3 / 4) {
+            bins <<= 1;
+        }
+        return 64 + 16 + 4 * bins + (32L + 24) * entries;
+    }
+
+    private static long[] keys() {
+        SplittableRandom random = new SplittableRandom(42);
+        long[] keys = new long[2 * ENTRIES];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+        }
+        return keys;
+    }
+}